@@ -10,6 +10,12 @@ public abstract class AbstractJVal<T> implements JVal {
 		this.value = value;
 	}
 
+	/**
+	 * For values decoded on demand; the subclass sets value before first use.
+	 */
+	protected AbstractJVal() {
+	}
+
 	@Override
 	public JVal asVal() {
 		return this;
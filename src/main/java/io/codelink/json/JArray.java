@@ -1,47 +1,90 @@
 package io.codelink.json;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
 
 import io.codelink.json.stream.JElementSerializer;
 
-public class JArray implements JElement, Iterable<JElement> {
+public class JArray extends JContainer implements Iterable<JElement> {
 
 	public static final JArray EMPTY = new JArray() {
 		@Override
 		public JArray add(Object element) {
 			throw new IllegalStateException("Cannot add elements into EMPTY JArray!");
 		}
+
+		@Override
+		void addParent(JContainer parent) {
+			// shared and never changes
+		}
 	};
 
-	private final List<JElement> items;
+	private List<JElement> items;
+
+	/**
+	 * The capacity of the store a compact array picks on its first add, -1
+	 * once picked or for arrays that aren't compact.
+	 */
+	private int compactCapacity = -1;
+
+	private boolean lazy;
+
+	/**
+	 * The array whose storage this one shares, as with slice(); such views
+	 * don't cache and report their changes to the source.
+	 */
+	private JArray source;
 
 	public JArray() {
-		this(new LinkedList<JElement>());
+		this(new ArrayList<JElement>());
+	}
+
+	/**
+	 * An empty array with room for {@code capacity} elements.
+	 */
+	public JArray(int capacity) {
+		this(new ArrayList<JElement>(capacity));
 	}
 
 	public JArray(Collection<JElement> items) {
-		this(new LinkedList<JElement>(items));
+		this(new ArrayList<JElement>(items));
 	}
 
 	protected JArray(List<JElement> items) {
 		this.items = items;
 	}
 
+	/**
+	 * An empty array, as the parsers create them, that stores integral
+	 * numbers in a long[] and DOUBLE numbers in a double[] while all its
+	 * elements are of the kind of the first one. Adding another kind of
+	 * element moves it to a list of elements; views taken before that no
+	 * longer follow it.
+	 */
+	public static JArray compact(int capacity) {
+		JArray array = new JArray(new ArrayList<JElement>(0));
+		array.compactCapacity = capacity;
+		return array;
+	}
+
 	@Override
 	public JType type() {
 		return JType.ARRAY;
@@ -49,6 +92,38 @@ public class JArray implements JElement, Iterable<JElement> {
 
 	@Override
 	public Iterator<JElement> iterator() {
+		ListIterator<JElement> iterator = items.listIterator();
+		return new Iterator<JElement>() {
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public JElement next() {
+				JElement element = iterator.next();
+				if (lazy && element instanceof JRaw) {
+					element = ((JRaw) element).resolve();
+					iterator.set(element);
+					adopt(element);
+				}
+				return element;
+			}
+
+			@Override
+			public void remove() {
+				iterator.remove();
+				modified();
+			}
+		};
+	}
+
+	/**
+	 * Iterates the elements as stored, without decoding values left as
+	 * {@link JRaw} by a lazy parse. Meant for serializers.
+	 */
+	public Iterator<JElement> rawIterator() {
 		return items.iterator();
 	}
 
@@ -61,7 +136,13 @@ public class JArray implements JElement, Iterable<JElement> {
 	}
 
 	public JElement get(Integer index) {
-		return items.get(index);
+		JElement element = items.get(index);
+		if (element instanceof JRaw) {
+			element = ((JRaw) element).resolve();
+			items.set(index, element);
+			adopt(element);
+		}
+		return element;
 	}
 
 	public <T> T get(Integer index, Class<T> returnType) {
@@ -70,14 +151,143 @@ public class JArray implements JElement, Iterable<JElement> {
 
 	public void set(Integer index, Object element) {
 		JElement je = Json.build(element);
-		items.set(index, je);
+		if (je instanceof JRaw) {
+			lazy = true;
+		}
+		storageFor(je).set(index, je);
+		modified();
 	}
 
 	public JArray add(Object element) {
-		items.add(Json.build(element));
+		JElement je = Json.build(element);
+		if (je instanceof JRaw) {
+			lazy = true;
+		}
+		storageFor(je).add(je);
+		modified();
 		return this;
 	}
 
+	/**
+	 * LONG or DOUBLE when the elements are stored as primitives, otherwise
+	 * null.
+	 */
+	public JNumType primitiveType() {
+		if (items instanceof JLongList) {
+			return JNumType.LONG;
+		}
+		return items instanceof JDoubleList ? JNumType.DOUBLE : null;
+	}
+
+	public long[] toLongArray() {
+		if (items instanceof JLongList) {
+			return ((JLongList) items).toLongArray();
+		}
+		long[] values = new long[items.size()];
+		int i = 0;
+		for (JElement element : this) {
+			values[i++] = ((JNumber) element).toLong();
+		}
+		return values;
+	}
+
+	public double[] toDoubleArray() {
+		if (items instanceof JDoubleList) {
+			return ((JDoubleList) items).toDoubleArray();
+		}
+		double[] values = new double[items.size()];
+		int i = 0;
+		for (JElement element : this) {
+			values[i++] = ((JNumber) element).toDouble();
+		}
+		return values;
+	}
+
+	/**
+	 * The element at the index as a long, read straight from a long[] store.
+	 */
+	public long longAt(int index) {
+		if (items instanceof JLongList) {
+			return ((JLongList) items).getLong(index);
+		}
+		return ((JNumber) get(index)).toLong();
+	}
+
+	/**
+	 * The element at the index as a double, read straight from a double[]
+	 * store.
+	 */
+	public double doubleAt(int index) {
+		if (items instanceof JDoubleList) {
+			return ((JDoubleList) items).getDouble(index);
+		}
+		return ((JNumber) get(index)).toDouble();
+	}
+
+	public LongStream longStream() {
+		return items instanceof JLongList ? ((JLongList) items).longStream() : Arrays.stream(toLongArray());
+	}
+
+	public DoubleStream doubleStream() {
+		return items instanceof JDoubleList ? ((JDoubleList) items).doubleStream() : Arrays.stream(toDoubleArray());
+	}
+
+	/**
+	 * Picks the store of a compact array on its first element, and leaves a
+	 * primitive store for a list before it would receive an element it can't
+	 * hold.
+	 */
+	private List<JElement> storageFor(JElement element) {
+		if (compactCapacity >= 0) {
+			if (JLongList.accepts(element)) {
+				items = new JLongList(compactCapacity);
+			} else if (JDoubleList.accepts(element)) {
+				items = new JDoubleList(compactCapacity);
+			} else {
+				items = new ArrayList<>(compactCapacity);
+			}
+			compactCapacity = -1;
+		} else if (items instanceof JLongList && !JLongList.accepts(element) || items instanceof JDoubleList && !JDoubleList.accepts(element)) {
+			items = new ArrayList<>(items);
+		}
+		return items;
+	}
+
+	public boolean isPersistent() {
+		return items instanceof JPersistentList;
+	}
+
+	/**
+	 * An immutable copy, as {@link JObject#persistent()}, for versions made
+	 * by {@link #with(int, Object)} and {@link #plus(Object)}.
+	 */
+	public JArray persistent() {
+		if (isPersistent()) {
+			return this;
+		}
+		JPersistentList list = JPersistentList.EMPTY;
+		for (JElement element : this) {
+			list = list.plus(persistentOf(element));
+		}
+		return new JArray(list);
+	}
+
+	/**
+	 * A persistent version with the element at the index replaced.
+	 */
+	public JArray with(int index, Object element) {
+		JArray array = persistent();
+		return new JArray(((JPersistentList) array.items).with(index, persistentOf(Json.build(element))));
+	}
+
+	/**
+	 * A persistent version with the element appended.
+	 */
+	public JArray plus(Object element) {
+		JArray array = persistent();
+		return new JArray(((JPersistentList) array.items).plus(persistentOf(Json.build(element))));
+	}
+
 	public JArray addAll(Object... elements) {
 		for (Object e : elements) {
 			add(e);
@@ -93,16 +303,22 @@ public class JArray implements JElement, Iterable<JElement> {
 	}
 
 	public JArray filter(Predicate<? super JElement> predicate) {
-		return new JArray(items.stream().filter(predicate).collect(Collectors.toList()));
+		return new JArray(resolvedItems().stream().filter(predicate).collect(Collectors.toList()));
 	}
 
+	/**
+	 * A view of the first {@code limit} elements, as with slice.
+	 */
 	public JArray limit(int limit) {
-		return new JArray(items.stream().limit(limit).collect(Collectors.toList()));
+		return slice(0, Math.min(limit, items.size()));
 	}
 
 	public JArray sort(Comparator<JElement> comp) {
-		items.sort(comp);
-		return new JArray(items);
+		resolvedItems().sort(comp);
+		modified();
+		JArray sorted = new JArray(items);
+		sorted.source = this;
+		return sorted;
 	}
 
 	public <T> Predicate<T> distinctByKey(Function<? super JElement, ?> keyExtractor) {
@@ -111,7 +327,7 @@ public class JArray implements JElement, Iterable<JElement> {
 	}
 
 	public JArray distinctByStrKey(String key) {
-		return new JArray(items.stream().filter(distinctByKey(f -> f.asObject().str(key))).collect(Collectors.toList()));
+		return new JArray(resolvedItems().stream().filter(distinctByKey(f -> f.asObject().str(key))).collect(Collectors.toList()));
 	}
 
 	public <T> List<T> list(Class<T> elementType) {
@@ -223,6 +439,7 @@ public class JArray implements JElement, Iterable<JElement> {
 
 	public JArray delete(Integer index) {
 		items.remove(index.intValue());
+		modified();
 		return this;
 	}
 
@@ -232,16 +449,25 @@ public class JArray implements JElement, Iterable<JElement> {
 	}
 
 	@Override
-	public String toString() {
-		JElementSerializer serializer = new JElementSerializer();
-		StringWriter archive = null;
-		try {
-			archive = new StringWriter();
-			serializer.serialize(this, archive);
-		} catch (IOException e) {
-			e.printStackTrace();
+	void serializeTo(JElementSerializer serializer, Writer writer) throws IOException {
+		serializer.serializeJArray(this, writer);
+	}
+
+	@Override
+	void forEachChild(Consumer<JElement> action) {
+		items.forEach(action);
+	}
+
+	@Override
+	boolean cacheable() {
+		return source == null;
+	}
+
+	private void modified() {
+		changed();
+		if (source != null) {
+			source.modified();
 		}
-		return archive.toString();
 	}
 
 	@Override
@@ -259,17 +485,43 @@ public class JArray implements JElement, Iterable<JElement> {
 		return valorFinal;
 	}
 
+	/**
+	 * A view of the range that shares this array's storage, so it takes no
+	 * copy and gets in constant time. Changes through either side show in
+	 * the other; adding to or removing from this array invalidates the view.
+	 */
 	public JArray slice(int posicaoInicial, int posicaoFinal) {
-		return new JArray(this.items.subList(posicaoInicial, posicaoFinal));
+		JArray slice = new JArray(this.items.subList(posicaoInicial, posicaoFinal));
+		slice.lazy = lazy;
+		slice.source = this;
+		return slice;
+	}
+
+	private List<JElement> resolvedItems() {
+		if (lazy) {
+			for (ListIterator<JElement> iterator = items.listIterator(); iterator.hasNext();) {
+				JElement element = iterator.next();
+				if (element instanceof JRaw) {
+					element = ((JRaw) element).resolve();
+					iterator.set(element);
+					adopt(element);
+				}
+			}
+			lazy = false;
+		}
+		return items;
 	}
 
 	//TODO: por enquanto apenas string
 	//Ajustar para outros casos
 	public Boolean contains(Object obj) {
+		String wanted = obj instanceof JContainer ? ((JContainer) obj).uncachedString() : obj.toString();
 		for (JElement objeto : this) {
-			if (objeto.isObject() && objeto.asObject().toString().equals(obj.toString())) {
-				return true;
-			} else if (objeto.asVal().string().equals(obj.toString())) {
+			if (objeto.isObject()) {
+				if (objeto.asObject().uncachedString().equals(wanted)) {
+					return true;
+				}
+			} else if (objeto.asVal().string().equals(wanted)) {
 				return true;
 			}
 		}
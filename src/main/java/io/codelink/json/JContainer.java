@@ -0,0 +1,199 @@
+package io.codelink.json;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import io.codelink.json.stream.JElementSerializer;
+
+/**
+ * Caches the serialized form of a JObject or JArray. toString() stores the
+ * form of the container it is called on, not of those inside, and registers
+ * the container weakly with the descendants it depends on, so a change
+ * anywhere below drops the cache of each ancestor that holds one. Serializers
+ * splice cached forms verbatim.
+ */
+abstract class JContainer implements JElement {
+
+	private volatile String serialized;
+
+	private volatile List<WeakReference<JContainer>> parents;
+
+	/**
+	 * Counts calls to changed(), so toString() publishes only a form no
+	 * change raced with.
+	 */
+	private volatile int modifications;
+
+	/**
+	 * The form stored by the last toString(), or null if the container or
+	 * one of its descendants changed since.
+	 */
+	public String cachedString() {
+		return serialized;
+	}
+
+	@Override
+	public String toString() {
+		String cached = serialized;
+		if (cached != null) {
+			return cached;
+		}
+		int version = modifications;
+		List<JContainer> watched = new ArrayList<>();
+		boolean cache = cacheable() && collectWatched(this, watched);
+		if (cache) {
+			// registered before serializing, so any change from here on bumps version
+			for (JContainer container : watched) {
+				container.addParent(this);
+			}
+		}
+		cached = serialize();
+		if (cache && modifications == version) {
+			serialized = cached;
+			if (modifications != version) {
+				serialized = null;
+			}
+		}
+		return cached;
+	}
+
+	/**
+	 * The serialized form, from the cache if one is held, without storing it
+	 * or registering with any descendant.
+	 */
+	final String uncachedString() {
+		String cached = serialized;
+		return cached != null ? cached : serialize();
+	}
+
+	private String serialize() {
+		StringWriter archive = new StringWriter();
+		try {
+			serializeTo(new JElementSerializer(), archive);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return archive.toString();
+	}
+
+	/**
+	 * Collects the containers below whose changes would change the form of
+	 * this one: every descendant down to the first one with a cached form,
+	 * which watches its own. False if one can't be watched, such as a view
+	 * over another array, whose changes this container would miss.
+	 */
+	private static boolean collectWatched(JContainer container, List<JContainer> watched) {
+		boolean[] watchable = { true };
+		container.forEachChild(child -> {
+			if (child instanceof JRaw) {
+				child = ((JRaw) child).resolved();
+			}
+			if (!watchable[0] || !(child instanceof JContainer)) {
+				return;
+			}
+			JContainer descendant = (JContainer) child;
+			if (descendant.isPersistent()) {
+				return;
+			}
+			if (!descendant.cacheable()) {
+				watchable[0] = false;
+				return;
+			}
+			watched.add(descendant);
+			if (descendant.serialized == null && !collectWatched(descendant, watched)) {
+				watchable[0] = false;
+			}
+		});
+		return watchable[0];
+	}
+
+	abstract void serializeTo(JElementSerializer serializer, Writer writer) throws IOException;
+
+	abstract void forEachChild(Consumer<JElement> action);
+
+	boolean cacheable() {
+		return true;
+	}
+
+	/**
+	 * Whether this is a persistent container, which never changes and so
+	 * needs no parents to notify.
+	 */
+	public abstract boolean isPersistent();
+
+	/**
+	 * The element with every container in it made persistent, decoding any
+	 * JRaw left by a lazy parse.
+	 */
+	static JElement persistentOf(JElement element) {
+		if (element instanceof JRaw) {
+			element = ((JRaw) element).resolve();
+		}
+		if (element instanceof JObject) {
+			return ((JObject) element).persistent();
+		}
+		if (element instanceof JArray) {
+			return ((JArray) element).persistent();
+		}
+		return element;
+	}
+
+	/**
+	 * Drops the cached form of this container and of its ancestors.
+	 */
+	protected void changed() {
+		modifications++;
+		if (serialized == null && parents == null) {
+			return;
+		}
+		serialized = null;
+		List<WeakReference<JContainer>> registered;
+		synchronized (this) {
+			registered = parents;
+			parents = null;
+		}
+		if (registered != null) {
+			for (WeakReference<JContainer> reference : registered) {
+				JContainer parent = reference.get();
+				if (parent != null) {
+					parent.changed();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Registers a child that replaced an undecoded JRaw while this container
+	 * holds a cached form or is watched by an ancestor that does.
+	 */
+	final void adopt(JElement child) {
+		if ((serialized != null || parents != null) && child instanceof JContainer) {
+			((JContainer) child).addParent(this);
+		}
+	}
+
+	synchronized void addParent(JContainer parent) {
+		if (isPersistent()) {
+			return;
+		}
+		if (parents == null) {
+			parents = new ArrayList<>(1);
+		}
+		for (Iterator<WeakReference<JContainer>> iterator = parents.iterator(); iterator.hasNext();) {
+			JContainer registered = iterator.next().get();
+			if (registered == parent) {
+				return;
+			}
+			if (registered == null) {
+				iterator.remove();
+			}
+		}
+		parents.add(new WeakReference<>(parent));
+	}
+}
@@ -27,6 +27,10 @@ public class JDate extends AbstractJVal<Temporal> {
 		return DATE;
 	}
 
+	public JDateType dateType() {
+		return dateType;
+	}
+
 	@Override
 	public LocalDate date() {
 		return (LocalDate) value;
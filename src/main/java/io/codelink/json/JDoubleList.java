@@ -0,0 +1,96 @@
+package io.codelink.json;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import java.util.stream.DoubleStream;
+
+/**
+ * Storage for a JArray of DOUBLE typed numbers as a double[], as parsed in
+ * JDecimalMode.DOUBLE. Elements are JNumbers created on access. Holds
+ * nothing else; JArray moves to a list of elements before adding one that
+ * isn't accepted.
+ */
+final class JDoubleList extends AbstractList<JElement> implements RandomAccess {
+
+	private double[] values;
+	private int size;
+
+	JDoubleList(int capacity) {
+		values = new double[Math.max(capacity, 4)];
+	}
+
+	static boolean accepts(JElement element) {
+		if (!(element instanceof JNumber)) {
+			return false;
+		}
+		return ((JNumber) element).numberType() == JNumType.DOUBLE;
+	}
+
+	@Override
+	public JElement get(int index) {
+		return new JNumber(values[checkIndex(index)]);
+	}
+
+	@Override
+	public JElement set(int index, JElement element) {
+		JElement previous = get(index);
+		values[index] = value(element);
+		return previous;
+	}
+
+	@Override
+	public void add(int index, JElement element) {
+		double value = value(element);
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size + (size >> 1) + 1);
+		}
+		System.arraycopy(values, index, values, index + 1, size - index);
+		values[index] = value;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public JElement remove(int index) {
+		JElement previous = get(index);
+		System.arraycopy(values, index + 1, values, index, size - index - 1);
+		size--;
+		modCount++;
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	double[] toDoubleArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	double getDouble(int index) {
+		return values[checkIndex(index)];
+	}
+
+	DoubleStream doubleStream() {
+		return Arrays.stream(values, 0, size);
+	}
+
+	private int checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return index;
+	}
+
+	private static double value(JElement element) {
+		if (!accepts(element)) {
+			throw new IllegalArgumentException("A view of a compact numeric JArray cannot hold " + element);
+		}
+		return ((JNumber) element).toDouble();
+	}
+}
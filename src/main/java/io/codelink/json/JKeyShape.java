@@ -0,0 +1,157 @@
+package io.codelink.json;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The ordered keys of a JObject, shared by every object that has the same
+ * keys in the same order. Shapes form a tree from {@link #ROOT}: adding a key
+ * follows, or creates, the transition for it, so objects built alike end on
+ * the same instance. Transitions are weak, and a shape holds only its
+ * parent, so shapes no object uses any more are collected; their transitions
+ * are dropped from a reference queue on the next miss, not by a scan. The tree
+ * is bounded in depth and in the live fan-out of each shape;
+ * {@link #with(String)} returns null past those bounds, and the object then
+ * keeps its properties in a map.
+ */
+final class JKeyShape {
+
+	static final JKeyShape ROOT = new JKeyShape(null, new String[0], true);
+
+	private static final int MAX_KEYS = 32;
+	private static final int MAX_TRANSITIONS = 64;
+
+	private static final ReferenceQueue<JKeyShape> COLLECTED = new ReferenceQueue<>();
+
+	/**
+	 * Keeps the path from the root alive while this shape is in use, so new
+	 * objects built alike reach this same shape.
+	 */
+	@SuppressWarnings("unused")
+	private final JKeyShape parent;
+	private final String[] keys;
+	private final int[] slots;
+	private final ConcurrentMap<String, Transition> transitions;
+
+	private JKeyShape(JKeyShape parent, String[] keys, boolean shared) {
+		this.parent = parent;
+		this.keys = keys;
+		this.transitions = shared ? new ConcurrentHashMap<>() : null;
+		int capacity = 4;
+		while (capacity < keys.length * 2) {
+			capacity <<= 1;
+		}
+		slots = new int[capacity];
+		for (int i = 0; i < keys.length; i++) {
+			int slot = keys[i].hashCode() & (capacity - 1);
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			slots[slot] = i + 1;
+		}
+	}
+
+	int size() {
+		return keys.length;
+	}
+
+	String key(int index) {
+		return keys[index];
+	}
+
+	int indexOf(Object key) {
+		int mask = slots.length - 1;
+		for (int slot = key.hashCode() & mask;; slot = (slot + 1) & mask) {
+			int index = slots[slot] - 1;
+			if (index < 0) {
+				return -1;
+			}
+			String candidate = keys[index];
+			if (candidate == key || candidate.equals(key)) {
+				return index;
+			}
+		}
+	}
+
+	/**
+	 * The shape with the given key appended, or null if this shape is as
+	 * deep as shapes go or already leads to as many live shapes as it may.
+	 */
+	JKeyShape with(String key) {
+		if (transitions == null || keys.length >= MAX_KEYS) {
+			return null;
+		}
+		Transition transition = transitions.get(key);
+		JKeyShape next = transition == null ? null : transition.get();
+		if (next != null) {
+			return next;
+		}
+		expunge();
+		if (transitions.size() >= MAX_TRANSITIONS && !transitions.containsKey(key)) {
+			return null;
+		}
+		JKeyShape[] result = new JKeyShape[1];
+		transitions.compute(key, (k, existing) -> {
+			JKeyShape shape = existing == null ? null : existing.get();
+			if (shape == null) {
+				String[] appended = Arrays.copyOf(keys, keys.length + 1);
+				appended[keys.length] = key;
+				shape = new JKeyShape(this, appended, true);
+				existing = new Transition(this, key, shape);
+			}
+			result[0] = shape;
+			return existing;
+		});
+		return result[0];
+	}
+
+	/**
+	 * Drops the transitions to shapes collected since the last call, wherever
+	 * they are in the tree.
+	 */
+	private static void expunge() {
+		for (Transition cleared; (cleared = (Transition) COLLECTED.poll()) != null;) {
+			cleared.from.transitions.remove(cleared.key, cleared);
+		}
+	}
+
+	/**
+	 * The shape with the key at the given index removed: the shared one when
+	 * the tree has room for it, otherwise a private shape that takes no
+	 * further keys.
+	 */
+	JKeyShape without(int index) {
+		JKeyShape shape = ROOT;
+		for (int i = 0; i < keys.length && shape != null; i++) {
+			if (i != index) {
+				shape = shape.with(keys[i]);
+			}
+		}
+		if (shape != null) {
+			return shape;
+		}
+		String[] remaining = new String[keys.length - 1];
+		System.arraycopy(keys, 0, remaining, 0, index);
+		System.arraycopy(keys, index + 1, remaining, index, keys.length - index - 1);
+		return new JKeyShape(null, remaining, false);
+	}
+
+	/**
+	 * A weak transition, which remembers where it was added so it can be
+	 * dropped once its shape is collected.
+	 */
+	private static final class Transition extends WeakReference<JKeyShape> {
+
+		final JKeyShape from;
+		final String key;
+
+		Transition(JKeyShape from, String key, JKeyShape to) {
+			super(to, COLLECTED);
+			this.from = from;
+			this.key = key;
+		}
+	}
+}
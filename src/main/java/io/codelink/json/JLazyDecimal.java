@@ -0,0 +1,51 @@
+package io.codelink.json;
+
+import java.math.BigDecimal;
+
+/**
+ * The source digits of a decimal number, converted only when a value is
+ * asked for.
+ */
+final class JLazyDecimal extends Number {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String digits;
+	private BigDecimal decimal;
+
+	JLazyDecimal(String digits) {
+		this.digits = digits;
+	}
+
+	BigDecimal decimal() {
+		if (decimal == null) {
+			decimal = new BigDecimal(digits);
+		}
+		return decimal;
+	}
+
+	@Override
+	public int intValue() {
+		return decimal().intValue();
+	}
+
+	@Override
+	public long longValue() {
+		return decimal().longValue();
+	}
+
+	@Override
+	public float floatValue() {
+		return Float.parseFloat(digits);
+	}
+
+	@Override
+	public double doubleValue() {
+		return Double.parseDouble(digits);
+	}
+
+	@Override
+	public String toString() {
+		return digits;
+	}
+}
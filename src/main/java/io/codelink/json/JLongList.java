@@ -0,0 +1,106 @@
+package io.codelink.json;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import java.util.stream.LongStream;
+
+/**
+ * Storage for a JArray of integral numbers as a long[]. Elements are JNumbers
+ * created on access, typed as the parsers type them: INTEGER when the value
+ * fits an int, LONG otherwise. Holds nothing else; JArray moves to a list of
+ * elements before adding one that isn't accepted.
+ */
+final class JLongList extends AbstractList<JElement> implements RandomAccess {
+
+	private long[] values;
+	private int size;
+
+	JLongList(int capacity) {
+		values = new long[Math.max(capacity, 4)];
+	}
+
+	static boolean accepts(JElement element) {
+		if (!(element instanceof JNumber)) {
+			return false;
+		}
+		JNumber number = (JNumber) element;
+		switch (number.numberType()) {
+		case INTEGER:
+			return true;
+		case LONG:
+			long value = number.toLong();
+			return value != (int) value;
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public JElement get(int index) {
+		long value = values[checkIndex(index)];
+		return value == (int) value ? JNumber.valueOf((int) value) : new JNumber(value);
+	}
+
+	@Override
+	public JElement set(int index, JElement element) {
+		JElement previous = get(index);
+		values[index] = value(element);
+		return previous;
+	}
+
+	@Override
+	public void add(int index, JElement element) {
+		long value = value(element);
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size + (size >> 1) + 1);
+		}
+		System.arraycopy(values, index, values, index + 1, size - index);
+		values[index] = value;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public JElement remove(int index) {
+		JElement previous = get(index);
+		System.arraycopy(values, index + 1, values, index, size - index - 1);
+		size--;
+		modCount++;
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	long[] toLongArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	long getLong(int index) {
+		return values[checkIndex(index)];
+	}
+
+	LongStream longStream() {
+		return Arrays.stream(values, 0, size);
+	}
+
+	private int checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return index;
+	}
+
+	private static long value(JElement element) {
+		if (!accepts(element)) {
+			throw new IllegalArgumentException("A view of a compact numeric JArray cannot hold " + element);
+		}
+		return ((JNumber) element).toLong();
+	}
+}
@@ -11,38 +11,104 @@ import static io.codelink.json.JType.NUMBER;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 
+import io.codelink.json.stream.JNumberFormat;
+
+/**
+ * Ints, longs, floats and doubles are held unboxed in {@code bits}, as the
+ * value itself or as the raw bits of the double; only BigDecimals and
+ * BigIntegers use the value slot. Instances don't change once created, so
+ * the small ints of {@link #valueOf(int)} are shared.
+ */
 public class JNumber extends AbstractJVal<Number> {
 
-	private JNumType numberType;
+	private static final int CACHE_LOW = -128;
+	private static final int CACHE_HIGH = 1023;
+	private static final JNumber[] CACHE = new JNumber[CACHE_HIGH - CACHE_LOW + 1];
+
+	static {
+		for (int i = 0; i < CACHE.length; i++) {
+			CACHE[i] = new JNumber(i + CACHE_LOW);
+		}
+	}
+
+	private final JNumType numberType;
+	private final long bits;
 
 	public JNumber(BigDecimal value) {
 		super(value);
 		numberType = DECIMAL;
+		bits = 0;
 	}
 
 	public JNumber(BigInteger value) {
 		super(value);
 		numberType = BIGINTEGER;
+		bits = 0;
 	}
 
-	public JNumber(Integer value) {
-		super(value);
+	public JNumber(int value) {
 		numberType = INTEGER;
+		bits = value;
 	}
 
-	public JNumber(Long value) {
-		super(value);
+	public JNumber(long value) {
 		numberType = LONG;
+		bits = value;
 	}
 
-	public JNumber(Float value) {
-		super(value);
+	public JNumber(float value) {
 		numberType = FLOAT;
+		bits = Double.doubleToRawLongBits(value);
+	}
+
+	public JNumber(double value) {
+		numberType = DOUBLE;
+		bits = Double.doubleToRawLongBits(value);
+	}
+
+	public JNumber(Integer value) {
+		this(present(value).intValue());
+	}
+
+	public JNumber(Long value) {
+		this(present(value).longValue());
+	}
+
+	public JNumber(Float value) {
+		this(present(value).floatValue());
 	}
 
 	public JNumber(Double value) {
+		this(present(value).doubleValue());
+	}
+
+	private JNumber(JLazyDecimal value) {
 		super(value);
-		numberType = DOUBLE;
+		numberType = DECIMAL;
+		bits = 0;
+	}
+
+	/**
+	 * A shared instance for ints from -128 to 1023, a new one otherwise.
+	 */
+	public static JNumber valueOf(int value) {
+		if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+			return CACHE[value - CACHE_LOW];
+		}
+		return new JNumber(value);
+	}
+
+	/**
+	 * A decimal that keeps the given digits, which must form a valid number,
+	 * and converts them to a BigDecimal on first access.
+	 */
+	public static JNumber lazyDecimal(String digits) {
+		return new JNumber(new JLazyDecimal(digits));
+	}
+
+	private static <T> T present(T value) {
+		if (value == null) throw new IllegalArgumentException("JVal cannot hold null. Use JNull instead!");
+		return value;
 	}
 
 	@Override
@@ -52,83 +118,167 @@ public class JNumber extends AbstractJVal<Number> {
 
 	@Override
 	public Integer integer() {
-		switch (numberType) {
-		case INTEGER:
-			return (Integer) value;
-		default:
-			return value.intValue();
-		}
+		return toInt();
 	}
 
 	@Override
 	public BigInteger bigInteger() {
 		switch (numberType) {
+		case INTEGER:
+		case LONG:
+			return BigInteger.valueOf(bits);
 		case BIGINTEGER:
 			return (BigInteger) value;
 		default:
-			return new BigInteger(value.toString());
+			return decimal().toBigInteger();
 		}
 	}
 
+	/**
+	 * Doubles convert to the decimal of their shortest representation, the
+	 * one serializers write. Floats convert to the decimal of Float.toString,
+	 * which before JDK 19 may have a digit more than the shortest.
+	 */
 	@Override
 	public BigDecimal decimal() {
 		switch (numberType) {
-		case DECIMAL:
-			return (BigDecimal) value;
+		case INTEGER:
+		case LONG:
+			return BigDecimal.valueOf(bits);
+		case FLOAT:
+			return new BigDecimal(Float.toString(toFloat()));
+		case DOUBLE:
+			double d = toDouble();
+			if (Double.isNaN(d) || Double.isInfinite(d)) {
+				throw new IllegalStateException(d + " cannot be expressed as BigDecimal");
+			}
+			return JNumberFormat.decimal(d);
+		case BIGINTEGER:
+			return new BigDecimal((BigInteger) value);
 		default:
-			return new BigDecimal(value.longValue());
+			if (value instanceof JLazyDecimal) {
+				value = ((JLazyDecimal) value).decimal();
+			}
+			return (BigDecimal) value;
 		}
 	}
 
 	@Override
 	public Long longint() {
+		return toLong();
+	}
+
+	@Override
+	public Float floatValue() {
+		return toFloat();
+	}
+
+	@Override
+	public Double doubleValue() {
+		return toDouble();
+	}
+
+	public int toInt() {
+		switch (numberType) {
+		case INTEGER:
+		case LONG:
+			return (int) bits;
+		case FLOAT:
+		case DOUBLE:
+			return (int) toDouble();
+		default:
+			return value.intValue();
+		}
+	}
+
+	public long toLong() {
 		switch (numberType) {
+		case INTEGER:
 		case LONG:
-			return (Long) value;
+			return bits;
+		case FLOAT:
+		case DOUBLE:
+			return (long) toDouble();
 		default:
 			return value.longValue();
 		}
 	}
 
-	@Override
-	public Float floatValue() {
+	public float toFloat() {
 		switch (numberType) {
+		case INTEGER:
+		case LONG:
+			return bits;
 		case FLOAT:
-			return (Float) value;
+		case DOUBLE:
+			return (float) toDouble();
 		default:
-			return new Float(value.floatValue());
+			return value.floatValue();
 		}
 	}
 
-	@Override
-	public Double doubleValue() {
+	public double toDouble() {
 		switch (numberType) {
+		case INTEGER:
+		case LONG:
+			return bits;
+		case FLOAT:
 		case DOUBLE:
-			return (Double) value;
+			return Double.longBitsToDouble(bits);
 		default:
-			return new Double(value.doubleValue());
+			return value.doubleValue();
 		}
 	}
 
 	@Override
 	public String string() {
-		return value.toString();
+		switch (numberType) {
+		case INTEGER:
+		case LONG:
+			return Long.toString(bits);
+		case FLOAT:
+			return Float.toString(toFloat());
+		case DOUBLE:
+			return Double.toString(toDouble());
+		default:
+			return value.toString();
+		}
 	}
 
 	@Override
 	public Boolean bool() {
-		if (value.toString().equals("1")) {
+		String string = string();
+		if (string.equals("1")) {
 			return Boolean.TRUE;
-		} else if (value.toString().equals("0")) {
+		} else if (string.equals("0")) {
 			return Boolean.FALSE;
 		}
-		return Boolean.valueOf(value.toString());
+		return Boolean.valueOf(string);
 	}
 
 	public JNumType numberType() {
 		return numberType;
 	}
 
+	/**
+	 * The value as a Number, boxed on each call for ints, longs, floats and
+	 * doubles; use the primitive conversions where that matters.
+	 */
+	public Number numberValue() {
+		switch (numberType) {
+		case INTEGER:
+			return Integer.valueOf((int) bits);
+		case LONG:
+			return Long.valueOf(bits);
+		case FLOAT:
+			return Float.valueOf(toFloat());
+		case DOUBLE:
+			return Double.valueOf(toDouble());
+		default:
+			return value;
+		}
+	}
+
 	@Override
 	public JNumber number() {
 		return this;
@@ -3,29 +3,37 @@ package io.codelink.json;
 import static io.codelink.json.JType.OBJECT;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.AbstractMap.SimpleEntry;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
-import io.codelink.json.stream.JElementParser;
 import io.codelink.json.stream.JElementSerializer;
+import io.codelink.json.stream.JSharedParser;
 
-public class JObject implements JElement, Iterable<Entry<String, JElement>> {
+public class JObject extends JContainer implements Iterable<Entry<String, JElement>> {
 
 	Map<String, JElement> properties;
 
 	String alias;
 
+	private boolean lazy;
+
+	/**
+	 * An object whose keys are kept in a {@link JKeyShape} shared with the
+	 * objects that have the same keys, and its values in an array.
+	 */
 	public JObject() {
-		this(new LinkedHashMap<>());
+		this.properties = new JShapedMap(this);
 	}
 
 	protected JObject(Map<String, JElement> properties) {
@@ -33,7 +41,7 @@ public class JObject implements JElement, Iterable<Entry<String, JElement>> {
 	}
 
 	public JObject(String alias) {
-		this(new LinkedHashMap<>());
+		this.properties = new JShapedMap(this);
 		this.alias = alias;
 	}
 
@@ -173,14 +181,159 @@ public class JObject implements JElement, Iterable<Entry<String, JElement>> {
 
 	@Override
 	public Iterator<Entry<String, JElement>> iterator() {
+		Iterator<Entry<String, JElement>> iterator = properties.entrySet().iterator();
+		return new Iterator<Entry<String, JElement>>() {
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Entry<String, JElement> next() {
+				Entry<String, JElement> entry = iterator.next();
+				boolean shaped = entry instanceof JShapedMap.Property;
+				if (lazy && entry.getValue() instanceof JRaw) {
+					JElement element = ((JRaw) entry.getValue()).resolve();
+					if (shaped) {
+						((JShapedMap.Property) entry).resolved(element);
+					} else {
+						entry.setValue(element);
+					}
+					adopt(element);
+				}
+				return shaped ? entry : new Property(entry);
+			}
+
+			@Override
+			public void remove() {
+				iterator.remove();
+				changed();
+			}
+		};
+	}
+
+	/**
+	 * An entry of iterator() over map storage, whose setValue drops cached
+	 * forms as set() does. Shaped storage hands out its own entries.
+	 */
+	private final class Property extends SimpleEntry<String, JElement> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient Entry<String, JElement> entry;
+
+		Property(Entry<String, JElement> entry) {
+			super(entry);
+			this.entry = entry;
+		}
+
+		@Override
+		public JElement setValue(JElement value) {
+			entry.setValue(value);
+			replaced(value);
+			return super.setValue(value);
+		}
+	}
+
+	/**
+	 * Called after an entry's setValue replaced a value.
+	 */
+	void replaced(JElement value) {
+		if (value instanceof JRaw) {
+			lazy = true;
+		}
+		changed();
+	}
+
+	/**
+	 * Iterates the properties as stored, without decoding values left as
+	 * {@link JRaw} by a lazy parse. Meant for serializers.
+	 */
+	public Iterator<Entry<String, JElement>> rawIterator() {
 		return properties.entrySet().iterator();
 	}
 
 	public JObject delete(String property) {
-		properties.remove(property);
+		if (properties.remove(property) != null) {
+			changed();
+		}
 		return this;
 	}
 
+	public boolean isPersistent() {
+		return properties instanceof JPersistentMap;
+	}
+
+	/**
+	 * An immutable copy that shares its unchanged parts with the versions
+	 * made from it by {@link #with(String, Object)} and
+	 * {@link #without(String)}, and can be read from any thread without
+	 * locks. Every container inside is made persistent too; a persistent
+	 * object returns itself.
+	 */
+	public JObject persistent() {
+		if (isPersistent()) {
+			return this;
+		}
+		JPersistentMap map = JPersistentMap.EMPTY;
+		for (Entry<String, JElement> entry : this) {
+			map = map.with(entry.getKey(), persistentOf(entry.getValue()));
+		}
+		return persistent(map);
+	}
+
+	/**
+	 * A persistent version with the path set, creating the objects missing
+	 * along it. Only the objects on the path are copied.
+	 */
+	public JObject with(String path, Object element) {
+		JObject object = persistent();
+		JElement je = persistentOf(Json.build(element));
+		int dotIndex = path.indexOf('.');
+		if (dotIndex < 0) {
+			return object.persistent(object.map().with(path, je));
+		}
+		String property = path.substring(0, dotIndex);
+		JElement e = object.properties.get(property);
+		if (e == null) {
+			e = persistent(JPersistentMap.EMPTY);
+		} else if (e.type() != OBJECT) {
+			throw new IllegalArgumentException(property + " is not a JObject instance");
+		}
+		return object.persistent(object.map().with(property, e.asObject().with(path.substring(dotIndex + 1), je)));
+	}
+
+	/**
+	 * A persistent version without the path, or this one made persistent if
+	 * the path isn't there.
+	 */
+	public JObject without(String path) {
+		JObject object = persistent();
+		int dotIndex = path.indexOf('.');
+		if (dotIndex < 0) {
+			JPersistentMap map = object.map().without(path);
+			return map == object.properties ? object : object.persistent(map);
+		}
+		String property = path.substring(0, dotIndex);
+		JElement e = object.properties.get(property);
+		if (e == null || e.type() != OBJECT) {
+			return object;
+		}
+		JObject child = e.asObject().without(path.substring(dotIndex + 1));
+		return child == e ? object : object.persistent(object.map().with(property, child));
+	}
+
+	private JPersistentMap map() {
+		return (JPersistentMap) properties;
+	}
+
+	private JObject persistent(JPersistentMap map) {
+		JObject object = new JObject(map);
+		object.alias = alias;
+		return object;
+	}
+
 	private <R> R execute(String path, boolean create, BiFunction<JObject, String, R> action, R otherwise) {
 		if (path == null) {
 			return otherwise;
@@ -257,7 +410,7 @@ public class JObject implements JElement, Iterable<Entry<String, JElement>> {
 	}
 
 	public static JObject merge(String json, JObject object) {
-		JObject mapper = new JElementParser().parse(json.toCharArray()).asObject();
+		JObject mapper = JSharedParser.DEFAULT.parse(json).asObject();
 		for (Entry<String, JElement> ent : mapper) {
 			if (ent.getValue() instanceof JObject) {
 				if (object.hasNotNull(ent.getKey())) {
@@ -285,24 +438,44 @@ public class JObject implements JElement, Iterable<Entry<String, JElement>> {
 	}
 
 	private JElement getLocal(String property) {
-		return properties.get(property);
+		JElement element = properties.get(property);
+		if (element instanceof JRaw) {
+			element = ((JRaw) element).resolve();
+			properties.put(property, element);
+			adopt(element);
+		}
+		return element;
 	}
 
 	private void setLocal(String property, JElement element) {
-		properties.put(property, element);
+		if (element instanceof JRaw) {
+			lazy = true;
+		}
+		if (!(properties instanceof JShapedMap) || !((JShapedMap) properties).offer(property, element)) {
+			storage().put(property, element);
+		}
+		changed();
 	}
 
-	@Override
-	public String toString() {
-		JElementSerializer serializer = new JElementSerializer();
-		StringWriter archive = null;
-		try {
-			archive = new StringWriter();
-			serializer.serialize(this, archive);
-		} catch (IOException e) {
-			e.printStackTrace();
+	/**
+	 * Leaves shaped storage for a LinkedHashMap, once it was offered a key no
+	 * shape has room for.
+	 */
+	private Map<String, JElement> storage() {
+		if (properties instanceof JShapedMap) {
+			properties = new LinkedHashMap<>(properties);
 		}
-		return archive.toString();
+		return properties;
+	}
+
+	@Override
+	void serializeTo(JElementSerializer serializer, Writer writer) throws IOException {
+		serializer.serializeJObject(this, writer);
+	}
+
+	@Override
+	void forEachChild(Consumer<JElement> action) {
+		properties.values().forEach(action);
 	}
 
 	@Override
@@ -312,7 +485,7 @@ public class JObject implements JElement, Iterable<Entry<String, JElement>> {
 
 	@Override
 	public JObject clone() {
-		return new JElementParser().parse(this.toString()).asObject();
+		return JSharedParser.DEFAULT.parse(this.toString()).asObject();
 	}
 
 	/**
@@ -0,0 +1,51 @@
+package io.codelink.json;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Immutable storage for a persistent JArray, over a {@link JVector}.
+ */
+final class JPersistentList extends AbstractList<JElement> implements RandomAccess {
+
+	static final JPersistentList EMPTY = new JPersistentList(JVector.EMPTY);
+
+	private final JVector vector;
+
+	private JPersistentList(JVector vector) {
+		this.vector = vector;
+	}
+
+	JPersistentList with(int index, JElement element) {
+		return new JPersistentList(vector.set(index, element));
+	}
+
+	JPersistentList plus(JElement element) {
+		return new JPersistentList(vector.append(element));
+	}
+
+	@Override
+	public JElement get(int index) {
+		return (JElement) vector.get(index);
+	}
+
+	@Override
+	public int size() {
+		return vector.size();
+	}
+
+	@Override
+	public JElement set(int index, JElement element) {
+		throw new IllegalStateException("A persistent JArray cannot change; use with(index, value)");
+	}
+
+	@Override
+	public void add(int index, JElement element) {
+		throw new IllegalStateException("A persistent JArray cannot change; use plus(value)");
+	}
+
+	@Override
+	public JElement remove(int index) {
+		throw new IllegalStateException("A persistent JArray cannot change");
+	}
+}
@@ -0,0 +1,248 @@
+package io.codelink.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable storage for a persistent JObject. A hash array mapped trie maps
+ * each key to its position in a {@link JVector} of entries, which keeps the
+ * insertion order; removed keys leave a hole until the holes outnumber the
+ * entries. {@link #with(String, JElement)} and {@link #without(String)} copy
+ * O(log n) nodes and share the rest.
+ */
+final class JPersistentMap extends AbstractMap<String, JElement> {
+
+	static final JPersistentMap EMPTY = new JPersistentMap(Node.EMPTY, JVector.EMPTY, 0);
+
+	private final Node root;
+	private final JVector order;
+	private final int size;
+
+	private JPersistentMap(Node root, JVector order, int size) {
+		this.root = root;
+		this.order = order;
+		this.size = size;
+	}
+
+	JPersistentMap with(String key, JElement value) {
+		Entry<String, JElement> entry = new SimpleImmutableEntry<>(key, value);
+		Integer index = (Integer) root.find(0, key.hashCode(), key);
+		if (index != null) {
+			return new JPersistentMap(root, order.set(index, entry), size);
+		}
+		return new JPersistentMap(root.put(0, key.hashCode(), key, order.size()), order.append(entry), size + 1);
+	}
+
+	JPersistentMap without(String key) {
+		Integer index = (Integer) root.find(0, key.hashCode(), key);
+		if (index == null) {
+			return this;
+		}
+		JPersistentMap removed = new JPersistentMap(root.remove(0, key.hashCode(), key), order.set(index, null), size - 1);
+		if (removed.order.size() - removed.size <= Math.max(removed.size, 8)) {
+			return removed;
+		}
+		JPersistentMap compacted = EMPTY;
+		for (Entry<String, JElement> entry : removed.entrySet()) {
+			compacted = compacted.with(entry.getKey(), entry.getValue());
+		}
+		return compacted;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof String && root.find(0, key.hashCode(), key) != null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public JElement get(Object key) {
+		if (!(key instanceof String)) {
+			return null;
+		}
+		Integer index = (Integer) root.find(0, key.hashCode(), key);
+		return index == null ? null : ((Entry<String, JElement>) order.get(index)).getValue();
+	}
+
+	@Override
+	public JElement put(String key, JElement value) {
+		throw new IllegalStateException("A persistent JObject cannot change; use with(path, value)");
+	}
+
+	@Override
+	public JElement remove(Object key) {
+		throw new IllegalStateException("A persistent JObject cannot change; use without(path)");
+	}
+
+	@Override
+	public void clear() {
+		throw new IllegalStateException("A persistent JObject cannot change");
+	}
+
+	@Override
+	public Set<Entry<String, JElement>> entrySet() {
+		return new AbstractSet<Entry<String, JElement>>() {
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public Iterator<Entry<String, JElement>> iterator() {
+				return new Iterator<Entry<String, JElement>>() {
+
+					private int next = skipHoles(0);
+
+					@Override
+					public boolean hasNext() {
+						return next < order.size();
+					}
+
+					@Override
+					@SuppressWarnings("unchecked")
+					public Entry<String, JElement> next() {
+						if (next >= order.size()) {
+							throw new NoSuchElementException();
+						}
+						Entry<String, JElement> entry = (Entry<String, JElement>) order.get(next);
+						next = skipHoles(next + 1);
+						return entry;
+					}
+				};
+			}
+		};
+	}
+
+	private int skipHoles(int index) {
+		while (index < order.size() && order.get(index) == null) {
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * A trie node: the bitmap tells which of the 32 slots for the next five
+	 * bits of the hash are used, and the array holds a key and its value, or
+	 * null and a child node, per used slot. Past the 32 bits of the hash the
+	 * node is a plain list of the colliding keys and values.
+	 */
+	private static final class Node {
+
+		static final Node EMPTY = new Node(0, new Object[0]);
+
+		final int bitmap;
+		final Object[] array;
+
+		Node(int bitmap, Object[] array) {
+			this.bitmap = bitmap;
+			this.array = array;
+		}
+
+		Object find(int shift, int hash, Object key) {
+			if (shift >= 32) {
+				for (int i = 0; i < array.length; i += 2) {
+					if (key.equals(array[i])) {
+						return array[i + 1];
+					}
+				}
+				return null;
+			}
+			int bit = 1 << ((hash >>> shift) & 31);
+			if ((bitmap & bit) == 0) {
+				return null;
+			}
+			int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+			Object candidate = array[i];
+			if (candidate == null) {
+				return ((Node) array[i + 1]).find(shift + 5, hash, key);
+			}
+			return key.equals(candidate) ? array[i + 1] : null;
+		}
+
+		Node put(int shift, int hash, String key, Object value) {
+			if (shift >= 32) {
+				for (int i = 0; i < array.length; i += 2) {
+					if (key.equals(array[i])) {
+						return replace(i + 1, value);
+					}
+				}
+				return new Node(0, insert(array.length, key, value));
+			}
+			int bit = 1 << ((hash >>> shift) & 31);
+			int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+			if ((bitmap & bit) == 0) {
+				return new Node(bitmap | bit, insert(i, key, value));
+			}
+			Object candidate = array[i];
+			if (candidate == null) {
+				return replace(i + 1, ((Node) array[i + 1]).put(shift + 5, hash, key, value));
+			}
+			if (key.equals(candidate)) {
+				return replace(i + 1, value);
+			}
+			String existing = (String) candidate;
+			Node child = EMPTY.put(shift + 5, existing.hashCode(), existing, array[i + 1]).put(shift + 5, hash, key, value);
+			Object[] copy = array.clone();
+			copy[i] = null;
+			copy[i + 1] = child;
+			return new Node(bitmap, copy);
+		}
+
+		Node remove(int shift, int hash, String key) {
+			if (shift >= 32) {
+				for (int i = 0; i < array.length; i += 2) {
+					if (key.equals(array[i])) {
+						return new Node(0, delete(i));
+					}
+				}
+				return this;
+			}
+			int bit = 1 << ((hash >>> shift) & 31);
+			if ((bitmap & bit) == 0) {
+				return this;
+			}
+			int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+			Object candidate = array[i];
+			if (candidate == null) {
+				Node child = ((Node) array[i + 1]).remove(shift + 5, hash, key);
+				if (child.array.length > 0) {
+					return child == array[i + 1] ? this : replace(i + 1, child);
+				}
+			} else if (!key.equals(candidate)) {
+				return this;
+			}
+			return new Node(bitmap & ~bit, delete(i));
+		}
+
+		private Node replace(int index, Object value) {
+			Object[] copy = array.clone();
+			copy[index] = value;
+			return new Node(bitmap, copy);
+		}
+
+		private Object[] insert(int index, String key, Object value) {
+			Object[] copy = new Object[array.length + 2];
+			System.arraycopy(array, 0, copy, 0, index);
+			copy[index] = key;
+			copy[index + 1] = value;
+			System.arraycopy(array, index, copy, index + 2, array.length - index);
+			return copy;
+		}
+
+		private Object[] delete(int index) {
+			Object[] copy = new Object[array.length - 2];
+			System.arraycopy(array, 0, copy, 0, index);
+			System.arraycopy(array, index + 2, copy, index, array.length - index - 2);
+			return copy;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package io.codelink.json;
+
+import io.codelink.json.stream.JSharedParser;
+
+/**
+ * A value left undecoded by a lazy parse, kept as a range of the source
+ * characters. JObject and JArray replace it with the decoded element on first
+ * access, and untouched values serialize straight from the source.
+ */
+public final class JRaw implements JElement {
+
+	private final char[] source;
+	private final int offset;
+	private final int length;
+	private final JSharedParser parser;
+
+	private JElement resolved;
+
+	public JRaw(char[] source, int offset, int length) {
+		this(source, offset, length, JSharedParser.DEFAULT);
+	}
+
+	/**
+	 * @param parser
+	 *            decodes the value, with the configuration of the parse that
+	 *            left it undecoded
+	 */
+	public JRaw(char[] source, int offset, int length, JSharedParser parser) {
+		this.source = source;
+		this.offset = offset;
+		this.length = length;
+		this.parser = parser;
+	}
+
+	@Override
+	public JType type() {
+		switch (source[offset]) {
+		case '{':
+			return JType.OBJECT;
+		case '[':
+			return JType.ARRAY;
+		case '"':
+			return JType.STRING;
+		case 't':
+		case 'f':
+			return JType.BOOLEAN;
+		case 'n':
+			return JType.NULL;
+		default:
+			return JType.NUMBER;
+		}
+	}
+
+	/**
+	 * Decodes the value, lazily again for nested objects and arrays.
+	 */
+	public JElement resolve() {
+		if (resolved == null) {
+			resolved = parser.parseLazy(source, offset, length);
+		}
+		return resolved;
+	}
+
+	/**
+	 * The decoded value, or null if it has not been decoded yet.
+	 */
+	public JElement resolved() {
+		return resolved;
+	}
+
+	public char[] source() {
+		return source;
+	}
+
+	public int offset() {
+		return offset;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public boolean isArray() {
+		return resolve().isArray();
+	}
+
+	@Override
+	public boolean isObject() {
+		return resolve().isObject();
+	}
+
+	@Override
+	public boolean isVal() {
+		return resolve().isVal();
+	}
+
+	@Override
+	public boolean isNull() {
+		return resolve().isNull();
+	}
+
+	@Override
+	public JArray asArray() {
+		return resolve().asArray();
+	}
+
+	@Override
+	public JObject asObject() {
+		return resolve().asObject();
+	}
+
+	@Override
+	public JVal asVal() {
+		return resolve().asVal();
+	}
+
+	@Override
+	public JNull asNull() {
+		return resolve().asNull();
+	}
+
+	@Override
+	public String toString() {
+		return resolved != null ? resolved.toString() : new String(source, offset, length);
+	}
+}
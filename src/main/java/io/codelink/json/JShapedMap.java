@@ -0,0 +1,190 @@
+package io.codelink.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Storage for a JObject as a shared {@link JKeyShape} and an array of values
+ * in key order. Adding a key moves the map to the next shape, removing one to
+ * the shape without it. Holds at most the keys a shape can take; JObject
+ * moves to a LinkedHashMap when {@link #offer(String, JElement)} refuses a
+ * key.
+ */
+final class JShapedMap extends AbstractMap<String, JElement> {
+
+	private final JObject owner;
+
+	private JKeyShape shape = JKeyShape.ROOT;
+	private JElement[] values = new JElement[4];
+	private int modCount;
+
+	JShapedMap(JObject owner) {
+		this.owner = owner;
+	}
+
+	@Override
+	public int size() {
+		return shape.size();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key != null && shape.indexOf(key) >= 0;
+	}
+
+	@Override
+	public JElement get(Object key) {
+		if (key == null) {
+			return null;
+		}
+		int index = shape.indexOf(key);
+		return index < 0 ? null : values[index];
+	}
+
+	@Override
+	public JElement put(String key, JElement value) {
+		JElement previous = get(key);
+		if (!offer(key, value)) {
+			throw new IllegalStateException("No shape can add " + key + " to " + keySet());
+		}
+		return previous;
+	}
+
+	/**
+	 * Sets the key, unless it is new and no shape has room for it.
+	 */
+	boolean offer(String key, JElement value) {
+		int index = shape.indexOf(key);
+		if (index >= 0) {
+			values[index] = value;
+			return true;
+		}
+		JKeyShape next = shape.with(key);
+		if (next == null) {
+			return false;
+		}
+		index = shape.size();
+		if (index == values.length) {
+			JElement[] grown = new JElement[index * 2];
+			System.arraycopy(values, 0, grown, 0, index);
+			values = grown;
+		}
+		values[index] = value;
+		shape = next;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public JElement remove(Object key) {
+		int index = key == null ? -1 : shape.indexOf(key);
+		return index < 0 ? null : removeAt(index);
+	}
+
+	@Override
+	public void clear() {
+		shape = JKeyShape.ROOT;
+		values = new JElement[4];
+		modCount++;
+	}
+
+	private JElement removeAt(int index) {
+		JElement previous = values[index];
+		int size = shape.size();
+		System.arraycopy(values, index + 1, values, index, size - index - 1);
+		values[size - 1] = null;
+		shape = shape.without(index);
+		modCount++;
+		return previous;
+	}
+
+	@Override
+	public Set<Entry<String, JElement>> entrySet() {
+		return new AbstractSet<Entry<String, JElement>>() {
+
+			@Override
+			public int size() {
+				return shape.size();
+			}
+
+			@Override
+			public Iterator<Entry<String, JElement>> iterator() {
+				return new Entries();
+			}
+		};
+	}
+
+	private final class Entries implements Iterator<Entry<String, JElement>> {
+
+		private int next;
+		private int last = -1;
+		private int expected = modCount;
+
+		@Override
+		public boolean hasNext() {
+			return next < shape.size();
+		}
+
+		@Override
+		public Entry<String, JElement> next() {
+			if (expected != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (next >= shape.size()) {
+				throw new NoSuchElementException();
+			}
+			last = next++;
+			return new Property(shape.key(last), last);
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			if (expected != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			removeAt(last);
+			next = last;
+			last = -1;
+			expected = modCount;
+		}
+	}
+
+	/**
+	 * An entry of the map, which JObject hands out as is: setValue writes
+	 * through and tells the owner, as set() would.
+	 */
+	final class Property extends SimpleEntry<String, JElement> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int index;
+
+		Property(String key, int index) {
+			super(key, values[index]);
+			this.index = index;
+		}
+
+		@Override
+		public JElement setValue(JElement value) {
+			JElement previous = resolved(value);
+			owner.replaced(value);
+			return previous;
+		}
+
+		/**
+		 * Writes through without telling the owner, for a value decoded from
+		 * the JRaw it replaces.
+		 */
+		JElement resolved(JElement value) {
+			values[index] = value;
+			return super.setValue(value);
+		}
+	}
+}
@@ -3,6 +3,7 @@ package io.codelink.json;
 import static io.codelink.json.JType.STRING;
 
 import java.math.BigDecimal;
+import java.nio.CharBuffer;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -14,10 +15,27 @@ public class JStr extends AbstractJVal<String> {
 	private static DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
 	private static DateTimeFormatter dateTimeFormatter2 = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
 
+	private char[] source;
+	private int offset;
+	private int length;
+
 	public JStr(String value) {
 		super(value);
 	}
 
+	/**
+	 * A string viewing the given range of chars, which must not change
+	 * afterwards. The String is only created on the first call that needs it.
+	 */
+	public JStr(char[] source, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > source.length) {
+			throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array length " + source.length);
+		}
+		this.source = source;
+		this.offset = offset;
+		this.length = length;
+	}
+
 	@Override
 	public JType type() {
 		return STRING;
@@ -25,45 +43,55 @@ public class JStr extends AbstractJVal<String> {
 
 	@Override
 	public String string() {
+		if (value == null) {
+			value = new String(source, offset, length);
+		}
 		return value;
 	}
 
+	/**
+	 * The chars of the string, without creating the String of a view.
+	 */
+	public CharSequence chars() {
+		return value == null ? CharBuffer.wrap(source, offset, length) : value;
+	}
+
 	@Override
 	public Integer integer() {
-		return Integer.valueOf(value);
+		return Integer.valueOf(string());
 	}
 
 	@Override
 	public Long longint() {
-		return Long.valueOf(value);
+		return Long.valueOf(string());
 	}
 
 	@Override
 	public BigDecimal decimal() {
-		return new BigDecimal(value);
+		return new BigDecimal(string());
 	}
 
 	@Override
 	public Boolean bool() {
-		if (value.equals("1")) {
+		if (string().equals("1")) {
 			return Boolean.TRUE;
-		} else if (value.equals("0")) {
+		} else if (string().equals("0")) {
 			return Boolean.FALSE;
 		}
-		return Boolean.valueOf(value);
+		return Boolean.valueOf(string());
 	}
 
 	@Override
 	public LocalDate date() {
-		return LocalDate.parse(value, dateFormatter);
+		return LocalDate.parse(string(), dateFormatter);
 	}
 
 	@Override
 	public LocalDateTime dateTime() {
 		try {
-			return LocalDateTime.parse(value, dateTimeFormatter);
+			return LocalDateTime.parse(string(), dateTimeFormatter);
 		} catch (DateTimeParseException e) {
-			return LocalDateTime.parse(value, dateTimeFormatter2);
+			return LocalDateTime.parse(string(), dateTimeFormatter2);
 		}
 	}
 
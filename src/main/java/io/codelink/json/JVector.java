@@ -0,0 +1,71 @@
+package io.codelink.json;
+
+import java.util.Arrays;
+
+/**
+ * An immutable vector as a 32-way trie. set and append copy only the path to
+ * the changed slot, O(log32 n), and share every other node with the vector
+ * they came from. Nodes grow to the slots they use, so short vectors stay
+ * small.
+ */
+final class JVector {
+
+	static final JVector EMPTY = new JVector(new Object[0], 0, 0);
+
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	private final Object[] root;
+	private final int shift;
+	private final int size;
+
+	private JVector(Object[] root, int shift, int size) {
+		this.root = root;
+		this.shift = shift;
+		this.size = size;
+	}
+
+	int size() {
+		return size;
+	}
+
+	Object get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		Object[] node = root;
+		for (int level = shift; level > 0; level -= BITS) {
+			node = (Object[]) node[(index >>> level) & MASK];
+		}
+		return node[index & MASK];
+	}
+
+	JVector set(int index, Object value) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return new JVector(assoc(root, shift, index, value), shift, size);
+	}
+
+	JVector append(Object value) {
+		if (size == 1 << (shift + BITS)) {
+			return new JVector(new Object[] { root, assoc(null, shift, size, value) }, shift + BITS, size + 1);
+		}
+		return new JVector(assoc(root, shift, size, value), shift, size + 1);
+	}
+
+	/**
+	 * A copy of the node with the slot for the index set, creating the nodes
+	 * on the path that don't exist yet.
+	 */
+	private static Object[] assoc(Object[] node, int level, int index, Object value) {
+		int slot = (index >>> level) & MASK;
+		Object[] copy = node == null ? new Object[slot + 1] : Arrays.copyOf(node, Math.max(node.length, slot + 1));
+		if (level == 0) {
+			copy[slot] = value;
+		} else {
+			copy[slot] = assoc(node == null || slot >= node.length ? null : (Object[]) node[slot], level - BITS, index, value);
+		}
+		return copy;
+	}
+}
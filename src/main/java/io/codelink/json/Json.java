@@ -63,7 +63,7 @@ public class Json {
 	public static Function<Double, JElement> fromDouble = (Double n) -> n == null ? NOTHING : new JNumber(n);
 
 	public static Function<Long, JElement> fromLong = (Long n) -> n == null ? NOTHING : new JNumber(n);
-	public static Function<Integer, JElement> fromInteger = (Integer n) -> n == null ? NOTHING : new JNumber(n);
+	public static Function<Integer, JElement> fromInteger = (Integer n) -> n == null ? NOTHING : JNumber.valueOf(n);
 	public static Function<Boolean, JElement> fromBool = (Boolean b) -> b == null ? NOTHING : b ? TRUE : FALSE;
 
 	public static Function<LocalDate, JElement> fromLocalDate = (LocalDate d) -> d == null ? NOTHING : new JDate(d);
@@ -163,7 +163,7 @@ public class Json {
 	}
 
 	@SuppressWarnings("unchecked")
-	protected static JElement build(Object element) {
+	public static JElement build(Object element) {
 		if (element == null) return JNull.NOTHING;
 
 		Class<?> clazz = element.getClass();
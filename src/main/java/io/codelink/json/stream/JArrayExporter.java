@@ -0,0 +1,143 @@
+package io.codelink.json.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+import io.codelink.json.JArray;
+import io.codelink.json.JElement;
+
+/**
+ * Exports large JArrays to a file. JElementByteSerializer encodes each element
+ * into its heap buffer, and each filled stretch is copied in bulk into a ring
+ * of direct buffers, which is handed to the FileChannel in a single gathering
+ * write once it fills. That one copy replaces the one the channel would make
+ * into a temporary direct buffer of its own; encoding into the direct buffers
+ * themselves would cost a checked put per byte instead. Elements with a cached
+ * or undecoded form are encoded from it without being traversed. Not
+ * thread-safe.
+ */
+public class JArrayExporter implements Closeable {
+
+	public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+	public static final int DEFAULT_BUFFERS = 8;
+
+	/**
+	 * When written data is forced to the storage device.
+	 */
+	public enum Sync {
+		NONE, ON_EXPORT, EVERY_WRITE
+	}
+
+	private final FileChannel channel;
+	private final ByteBuffer[] ring;
+	private final Sync sync;
+	private final JElementByteSerializer serializer;
+	private int current;
+	private long written;
+
+	public JArrayExporter(Path path) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), DEFAULT_BUFFER_SIZE, DEFAULT_BUFFERS, Sync.ON_EXPORT);
+	}
+
+	public JArrayExporter(FileChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFERS, Sync.NONE);
+	}
+
+	public JArrayExporter(FileChannel channel, int bufferSize, int buffers, Sync sync) {
+		if (bufferSize < 16 || buffers < 1) {
+			throw new IllegalArgumentException("At least one buffer of 16 bytes is needed!");
+		}
+		this.channel = channel;
+		this.sync = sync;
+		this.ring = new ByteBuffer[buffers];
+		for (int i = 0; i < buffers; i++) {
+			ring[i] = ByteBuffer.allocateDirect(bufferSize);
+		}
+		this.serializer = new JElementByteSerializer(Math.min(bufferSize, JElementByteSerializer.DEFAULT_BUFFER_SIZE * 8));
+	}
+
+	/**
+	 * Writes the array at the channel position and returns the number of
+	 * bytes written. All of it has reached the channel when this returns.
+	 */
+	public long export(JArray array) throws IOException {
+		long start = written;
+		put('[');
+		for (Iterator<JElement> iterator = array.rawIterator(); iterator.hasNext();) {
+			serializer.serialize(iterator.next(), this);
+			if (iterator.hasNext()) {
+				put(',');
+			}
+		}
+		put(']');
+		drain();
+		if (sync == Sync.ON_EXPORT) {
+			channel.force(false);
+		}
+		return written - start;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private void put(int b) throws IOException {
+		if (!ring[current].hasRemaining()) {
+			advance();
+		}
+		ring[current].put((byte) b);
+	}
+
+	/**
+	 * Copies the first {@code length} bytes of the serializer's buffer into
+	 * the ring, moving on to the next buffer as each one fills.
+	 */
+	void put(byte[] bytes, int length) throws IOException {
+		for (int offset = 0; offset < length;) {
+			ByteBuffer target = ring[current];
+			if (!target.hasRemaining()) {
+				advance();
+				continue;
+			}
+			int count = Math.min(length - offset, target.remaining());
+			target.put(bytes, offset, count);
+			offset += count;
+		}
+	}
+
+	private void advance() throws IOException {
+		if (++current == ring.length) {
+			drain();
+		}
+	}
+
+	/**
+	 * Writes every filled buffer of the ring with gathering writes and starts
+	 * over from the first one.
+	 */
+	private void drain() throws IOException {
+		int count = Math.min(current + 1, ring.length);
+		long remaining = 0;
+		for (int i = 0; i < count; i++) {
+			ring[i].flip();
+			remaining += ring[i].remaining();
+		}
+		while (remaining > 0) {
+			remaining -= channel.write(ring, 0, count);
+		}
+		for (int i = 0; i < count; i++) {
+			written += ring[i].position();
+			ring[i].clear();
+		}
+		current = 0;
+		if (sync == Sync.EVERY_WRITE) {
+			channel.force(false);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package io.codelink.json.stream;
+
+import io.codelink.json.JArray;
+
+/**
+ * Creates the compact arrays a parser builds, with capacity hints: the size of
+ * the last array completed at each nesting level, so arrays in documents of
+ * a recurring shape are created at their final size.
+ */
+final class JArraySizes {
+
+	private static final int LEVELS = 16;
+	private static final int MAX_HINT = 4096;
+
+	private final int[] sizes = new int[LEVELS];
+	private int depth;
+
+	JArray open() {
+		return JArray.compact(sizes[Math.min(depth++, LEVELS - 1)]);
+	}
+
+	JArray close(JArray array) {
+		if (depth > 0) {
+			depth--;
+		}
+		sizes[Math.min(depth, LEVELS - 1)] = Math.min(array.size(), MAX_HINT);
+		return array;
+	}
+
+	/**
+	 * Restarts at the top level, after a parse that failed half way.
+	 */
+	void reset() {
+		depth = 0;
+	}
+}
@@ -0,0 +1,131 @@
+package io.codelink.json.stream;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import io.codelink.json.JArray;
+import io.codelink.json.JElement;
+import io.codelink.json.JObject;
+import io.codelink.json.JRaw;
+
+/**
+ * Serializes one element as UTF-8 in chunks pulled by the consumer. Each call
+ * to next(ByteBuffer) fills the given buffer and keeps the traversal where it
+ * stopped, so only the value being written is held encoded, never the whole
+ * document. Output is what JElementByteSerializer writes. Not thread-safe, and
+ * the element must not change until the last chunk is taken.
+ */
+public class JChunkedSerializer {
+
+	private final JElement root;
+	private final JElementByteSerializer encoder = new JElementByteSerializer();
+	private final Deque<Frame> frames = new ArrayDeque<>();
+
+	private boolean started;
+	private int pending;
+
+	private static final class Frame {
+
+		final Iterator<?> iterator;
+		final boolean object;
+		boolean first = true;
+
+		Frame(Iterator<?> iterator, boolean object) {
+			this.iterator = iterator;
+			this.object = object;
+		}
+	}
+
+	public JChunkedSerializer(JElement root) {
+		this.root = root;
+	}
+
+	public boolean hasNext() {
+		return !started || pending < encoder.stagedLength() || !frames.isEmpty();
+	}
+
+	/**
+	 * Puts as much of the remaining output as fits into the target and returns
+	 * the number of bytes put, 0 once the document is complete.
+	 */
+	public int next(ByteBuffer target) {
+		int start = target.position();
+		while (target.hasRemaining()) {
+			if (pending == encoder.stagedLength()) {
+				encoder.reset();
+				pending = 0;
+				if (!advance()) {
+					break;
+				}
+			}
+			int length = Math.min(encoder.stagedLength() - pending, target.remaining());
+			target.put(encoder.staged(), pending, length);
+			pending += length;
+		}
+		return target.position() - start;
+	}
+
+	/**
+	 * Stages the next token, or value without nested containers to descend
+	 * into, and returns false when there is nothing left.
+	 */
+	private boolean advance() {
+		if (!started) {
+			started = true;
+			open(root);
+			return true;
+		}
+		Frame frame = frames.peek();
+		if (frame == null) {
+			return false;
+		}
+		if (!frame.iterator.hasNext()) {
+			frames.pop();
+			encoder.writeByte(frame.object ? '}' : ']');
+			return true;
+		}
+		if (!frame.first) {
+			encoder.writeByte(',');
+		}
+		frame.first = false;
+		if (frame.object) {
+			@SuppressWarnings("unchecked")
+			Entry<String, JElement> entry = (Entry<String, JElement>) frame.iterator.next();
+			encoder.writeQuoted(entry.getKey());
+			encoder.writeByte(':');
+			open(entry.getValue());
+		} else {
+			open((JElement) frame.iterator.next());
+		}
+		return true;
+	}
+
+	/**
+	 * Descends into objects and arrays that have no cached form; anything
+	 * else is staged whole.
+	 */
+	private void open(JElement element) {
+		if (element instanceof JRaw && ((JRaw) element).resolved() != null) {
+			element = ((JRaw) element).resolved();
+		}
+		if (element instanceof JObject) {
+			JObject object = (JObject) element;
+			if (object.cachedString() == null && object.size() > 0) {
+				frames.push(new Frame(object.rawIterator(), true));
+				encoder.writeByte('{');
+				return;
+			}
+		} else if (element instanceof JArray) {
+			JArray array = (JArray) element;
+			if (array.cachedString() == null && array.size() > 0) {
+				frames.push(new Frame(array.rawIterator(), false));
+				encoder.writeByte('[');
+				return;
+			}
+		}
+		encoder.write(element);
+	}
+}
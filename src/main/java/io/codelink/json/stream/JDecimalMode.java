@@ -0,0 +1,17 @@
+package io.codelink.json.stream;
+
+/**
+ * How the parsers decode numbers with a fraction or an exponent.
+ */
+public enum JDecimalMode {
+
+	/** An exact BigDecimal, the default. */
+	BIG_DECIMAL,
+
+	/** The correctly rounded double, computed without BigDecimal. */
+	DOUBLE,
+
+	/** Keeps the source digits and converts them on first access. */
+	LAZY
+
+}
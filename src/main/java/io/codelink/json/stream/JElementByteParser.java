@@ -0,0 +1,358 @@
+package io.codelink.json.stream;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import io.codelink.json.JArray;
+import io.codelink.json.JBool;
+import io.codelink.json.JElement;
+import io.codelink.json.JNull;
+import io.codelink.json.JNumber;
+import io.codelink.json.JObject;
+import io.codelink.json.JStr;
+
+/**
+ * Parses UTF-8 encoded JSON straight from a byte[] or a (heap or direct)
+ * ByteBuffer. Multi-byte sequences are only decoded inside strings, so the
+ * document is never copied into an intermediate String or char[].
+ */
+public class JElementByteParser {
+
+	private static final char REPLACEMENT = '\uFFFD';
+
+	private byte[] array;
+	private ByteBuffer buffer;
+
+	private int __index;
+	private int __currentByte;
+
+	private int limit;
+
+	private char[] scratch = new char[64];
+
+	private final JSymbolTable keys = new JSymbolTable(JElementParser.MAX_KEY_LENGTH, JElementParser.MAX_KEYS);
+	private JSymbolTable values;
+
+	private JDecimalMode decimalMode = JDecimalMode.BIG_DECIMAL;
+
+	private final JArraySizes arraySizes = new JArraySizes();
+
+	public JElement parse(byte[] bytes, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > bytes.length) {
+			throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array length " + bytes.length);
+		}
+		array = bytes;
+		buffer = null;
+		__index = offset;
+		limit = offset + length;
+		arraySizes.reset();
+		try {
+			return decodeValue();
+		} finally {
+			array = null;
+		}
+	}
+
+	/**
+	 * Parses the remaining bytes of the buffer. The buffer position is left
+	 * untouched, heap buffers are read through their backing array and direct
+	 * buffers through absolute gets.
+	 */
+	public JElement parse(ByteBuffer bytes) {
+		return parse(bytes, bytes.position(), bytes.remaining());
+	}
+
+	/**
+	 * Parses {@code length} bytes starting at the absolute index
+	 * {@code offset}, ignoring the buffer position and limit.
+	 */
+	public JElement parse(ByteBuffer bytes, int offset, int length) {
+		if (bytes.hasArray()) {
+			return parse(bytes.array(), bytes.arrayOffset() + offset, length);
+		}
+		if (offset < 0 || length < 0 || offset + length > bytes.capacity()) {
+			throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", capacity " + bytes.capacity());
+		}
+		array = null;
+		buffer = bytes;
+		__index = offset;
+		limit = offset + length;
+		arraySizes.reset();
+		try {
+			return decodeValue();
+		} finally {
+			buffer = null;
+		}
+	}
+
+	/**
+	 * Decodes the string token starting at the opening quote in bytes[offset].
+	 */
+	String decodeString(byte[] bytes, int offset, int length) {
+		array = bytes;
+		buffer = null;
+		__index = offset;
+		limit = offset + length;
+		try {
+			return decodeString();
+		} finally {
+			array = null;
+		}
+	}
+
+	public JElementByteParser decimalMode(JDecimalMode mode) {
+		decimalMode = mode;
+		return this;
+	}
+
+	/**
+	 * Shares equal string values of up to {@code maxLength} chars, see
+	 * {@link JElementParser#deduplicateStrings(int, int)}.
+	 */
+	public JElementByteParser deduplicateStrings(int maxLength, int maxEntries) {
+		return deduplicateStrings(new JSymbolTable(maxLength, maxEntries));
+	}
+
+	JElementByteParser deduplicateStrings(JSymbolTable table) {
+		values = table;
+		return this;
+	}
+
+	private int byteAt(int index) {
+		return array != null ? array[index] : buffer.get(index);
+	}
+
+	protected JElement decodeValue() {
+		skipWhiteSpaceIfNeeded();
+		switch (__currentByte) {
+		case '"':
+			return new JStr(decodeString(values));
+		case 't':
+			return decodeLiteral("true", JBool.TRUE);
+		case 'f':
+			return decodeLiteral("false", JBool.FALSE);
+		case 'n':
+			return decodeLiteral("null", JNull.NOTHING);
+		case '[':
+			return decodeJsonArray();
+		case '{':
+			return decodeJObject();
+		case '0':
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+		case '6':
+		case '7':
+		case '8':
+		case '9':
+		case '-':
+		case '+':
+			return decodeNumber();
+		default:
+			throw new IllegalArgumentException("Cannot parse element!");
+		}
+	}
+
+	protected JObject decodeJObject() {
+		__index++;
+		JObject object = new JObject();
+		for (; __index < limit; __index++) {
+			skipWhiteSpaceIfNeeded();
+			if (__currentByte == '"') {
+				String key = decodeString(keys);
+				skipWhiteSpaceIfNeeded();
+				if (__currentByte != ':') {
+					throw new IllegalArgumentException("expecting ':' but got current char " + (char) __currentByte);
+				}
+				__index++;
+				JElement value = decodeValue();
+				skipWhiteSpaceIfNeeded();
+				object.set(key, value);
+			}
+			if (__currentByte == '}') {
+				__index++;
+				return object;
+			} else if (__currentByte != ',') {
+				throw new IllegalArgumentException("expecting '}' or ',' but got current char " + (char) __currentByte);
+			}
+		}
+		throw new IllegalArgumentException("Did not find end of JObject");
+	}
+
+	protected JArray decodeJsonArray() {
+		__index++;
+		skipWhiteSpaceIfNeeded();
+		if (__currentByte == ']') {
+			__index++;
+			return JArray.EMPTY;
+		}
+		JArray list = arraySizes.open();
+		while (__index < limit) {
+			list.add(decodeValue());
+			skipWhiteSpaceIfNeeded();
+			if (__currentByte == ',') {
+				__index++;
+			} else if (__currentByte == ']') {
+				__index++;
+				return arraySizes.close(list);
+			} else {
+				throw new IllegalArgumentException(String.format("expecting a ',' or a ']', but got \nthe current character of %s on array index of %s \n", (char) __currentByte, list.size()));
+			}
+		}
+		throw new IllegalArgumentException("Did not find end of Json Array");
+	}
+
+	protected String decodeString() {
+		return decodeString(null);
+	}
+
+	/**
+	 * Decodes the string at the current index, returning the canonical copy
+	 * from the table when one is given.
+	 */
+	private String decodeString(JSymbolTable table) {
+		int index = __index + 1;
+		int start = index;
+
+		// ASCII without escapes is the common case and needs no decoding
+		if (array != null) {
+			byte[] bytes = array;
+			for (; index < limit; index++) {
+				byte b = bytes[index];
+				if (b == '"') {
+					__index = index + 1;
+					return table != null ? table.lookup(bytes, start, index - start) : new String(bytes, start, index - start, StandardCharsets.ISO_8859_1);
+				}
+				if (b == '\\' || b < 0) break;
+			}
+		}
+
+		char[] chars = scratch;
+		int length = 0;
+		for (index = start; index < limit;) {
+			int b = byteAt(index++);
+			if (length + 2 > chars.length) {
+				chars = scratch = Arrays.copyOf(chars, chars.length << 1);
+			}
+			if (b == '"') {
+				__index = index;
+				return table != null ? table.lookup(chars, 0, length) : new String(chars, 0, length);
+			} else if (b == '\\') {
+				if (index >= limit) break;
+				int e = byteAt(index++);
+				switch (e) {
+				case 'b':
+					chars[length++] = '\b';
+					break;
+				case 'f':
+					chars[length++] = '\f';
+					break;
+				case 'n':
+					chars[length++] = '\n';
+					break;
+				case 'r':
+					chars[length++] = '\r';
+					break;
+				case 't':
+					chars[length++] = '\t';
+					break;
+				case 'u':
+					if (index + 4 > limit) throw new IllegalArgumentException("Invalid unicode escape in string");
+					chars[length++] = (char) ((hex(byteAt(index)) << 12) | (hex(byteAt(index + 1)) << 8) | (hex(byteAt(index + 2)) << 4) | hex(byteAt(index + 3)));
+					index += 4;
+					break;
+				default:
+					chars[length++] = (char) e;
+				}
+			} else if (b >= 0) {
+				chars[length++] = (char) b;
+			} else if ((b & 0xE0) == 0xC0) {
+				if (index >= limit || !continuation(byteAt(index))) {
+					chars[length++] = REPLACEMENT;
+					continue;
+				}
+				chars[length++] = (char) (((b & 0x1F) << 6) | (byteAt(index++) & 0x3F));
+			} else if ((b & 0xF0) == 0xE0) {
+				if (index + 1 >= limit || !continuation(byteAt(index)) || !continuation(byteAt(index + 1))) {
+					chars[length++] = REPLACEMENT;
+					continue;
+				}
+				chars[length++] = (char) (((b & 0x0F) << 12) | ((byteAt(index) & 0x3F) << 6) | (byteAt(index + 1) & 0x3F));
+				index += 2;
+			} else if ((b & 0xF8) == 0xF0) {
+				if (index + 2 >= limit || !continuation(byteAt(index)) || !continuation(byteAt(index + 1)) || !continuation(byteAt(index + 2))) {
+					chars[length++] = REPLACEMENT;
+					continue;
+				}
+				int codePoint = ((b & 0x07) << 18) | ((byteAt(index) & 0x3F) << 12) | ((byteAt(index + 1) & 0x3F) << 6) | (byteAt(index + 2) & 0x3F);
+				index += 3;
+				chars[length++] = Character.highSurrogate(codePoint);
+				chars[length++] = Character.lowSurrogate(codePoint);
+			} else {
+				chars[length++] = REPLACEMENT;
+			}
+		}
+		throw new IllegalArgumentException("Did not find end of string");
+	}
+
+	private static boolean continuation(int b) {
+		return (b & 0xC0) == 0x80;
+	}
+
+	private static int hex(int b) {
+		if (b >= '0' && b <= '9') return b - '0';
+		if (b >= 'a' && b <= 'f') return b - 'a' + 10;
+		if (b >= 'A' && b <= 'F') return b - 'A' + 10;
+		throw new IllegalArgumentException("Invalid hex digit in unicode escape: " + (char) b);
+	}
+
+	private JNumber decodeNumber() {
+		int index = __index;
+		int start = index;
+		for (; index < limit; index++) {
+			int b = byteAt(index);
+			if (b <= ' ' || JElementParser.isDelimiter(b)) {
+				break;
+			} else if ((b < '0' || b > '9') && b != '-' && b != '+' && b != '.' && b != 'e' && b != 'E') {
+				throw new NumberFormatException("Found invalid digit char!");
+			}
+		}
+		__index = index;
+
+		int length = index - start;
+		if (length > scratch.length) {
+			scratch = new char[length];
+		}
+		char[] chars = scratch;
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) byteAt(start + i);
+		}
+		return JNumberDecoder.decode(chars, 0, length, decimalMode);
+	}
+
+	private JElement decodeLiteral(String literal, JElement value) {
+		int length = literal.length();
+		if (__index + length <= limit) {
+			int i = 0;
+			while (i < length && byteAt(__index + i) == literal.charAt(i)) {
+				i++;
+			}
+			if (i == length) {
+				__index += length;
+				return value;
+			}
+		}
+		throw new IllegalArgumentException(literal + " not parsed properly");
+	}
+
+	private void skipWhiteSpaceIfNeeded() {
+		for (; __index < limit; __index++) {
+			__currentByte = byteAt(__index);
+			if (__currentByte > 32 || __currentByte < 0) return;
+		}
+		__currentByte = -1;
+	}
+}
@@ -0,0 +1,474 @@
+package io.codelink.json.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import io.codelink.json.JArray;
+import io.codelink.json.JByte;
+import io.codelink.json.JClass;
+import io.codelink.json.JDate;
+import io.codelink.json.JElement;
+import io.codelink.json.JNumType;
+import io.codelink.json.JNumber;
+import io.codelink.json.JObject;
+import io.codelink.json.JRaw;
+import io.codelink.json.JStr;
+
+/**
+ * Serializes straight to UTF-8 bytes through a reusable buffer, which is
+ * flushed to an OutputStream, a WritableByteChannel or a ByteBuffer. Output is
+ * the UTF-8 encoding of what JElementSerializer writes. Escapes come from a
+ * lookup table and the spans between them are copied in bulk. Not
+ * thread-safe; keep one instance per thread.
+ */
+public class JElementByteSerializer {
+
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private static final byte[][] ESCAPES = new byte[128][];
+
+	private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+	private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+	private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+
+	static {
+		for (int c = 0; c < ' '; c++) {
+			ESCAPES[c] = ascii(String.format("\\u%04x", c));
+		}
+		ESCAPES['\b'] = ascii("\\b");
+		ESCAPES['\f'] = ascii("\\f");
+		ESCAPES['\n'] = ascii("\\n");
+		ESCAPES['\r'] = ascii("\\r");
+		ESCAPES['\t'] = ascii("\\t");
+		ESCAPES['"'] = ascii("\\\"");
+		ESCAPES['\\'] = ascii("\\\\");
+	}
+
+	private byte[] buffer;
+	private int position;
+
+	private final char[] scratch = new char[JNumberFormat.MAX_LENGTH];
+
+	private JShapes shapes;
+
+	private OutputStream out;
+	private WritableByteChannel channel;
+	private ByteBuffer target;
+	private JArrayExporter exporter;
+
+	public JElementByteSerializer() {
+		this(DEFAULT_BUFFER_SIZE);
+	}
+
+	public JElementByteSerializer(int bufferSize) {
+		if (bufferSize < 16) {
+			throw new IllegalArgumentException("Buffer size must be at least 16 bytes!");
+		}
+		buffer = new byte[bufferSize];
+	}
+
+	/**
+	 * Remembers the key sequences of written objects and writes objects of a
+	 * known sequence with pre-encoded keys, for arrays of records that share
+	 * their keys. Output is unchanged.
+	 */
+	public JElementByteSerializer shapeCache(boolean enabled) {
+		shapes = enabled ? new JShapes() : null;
+		return this;
+	}
+
+	public void serialize(JElement instance, OutputStream out) throws IOException {
+		this.out = out;
+		try {
+			write(instance);
+			flush();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			this.out = null;
+			position = 0;
+		}
+	}
+
+	public void serialize(JElement instance, WritableByteChannel channel) throws IOException {
+		this.channel = channel;
+		try {
+			write(instance);
+			flush();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			this.channel = null;
+			position = 0;
+		}
+	}
+
+	/**
+	 * Puts the document at the position of the target and returns its length
+	 * in bytes. Throws BufferOverflowException if the target runs out of room,
+	 * in which case it holds a truncated document.
+	 */
+	public int serialize(JElement instance, ByteBuffer target) {
+		int start = target.position();
+		this.target = target;
+		try {
+			write(instance);
+			flush();
+		} finally {
+			this.target = null;
+			position = 0;
+		}
+		return target.position() - start;
+	}
+
+	/**
+	 * Hands each filled stretch of the buffer to the exporter, which copies
+	 * it into its ring.
+	 */
+	void serialize(JElement instance, JArrayExporter exporter) throws IOException {
+		this.exporter = exporter;
+		try {
+			write(instance);
+			flush();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			this.exporter = null;
+			position = 0;
+		}
+	}
+
+	public byte[] toBytes(JElement instance) {
+		try {
+			write(instance);
+			return Arrays.copyOf(buffer, position);
+		} finally {
+			position = 0;
+		}
+	}
+
+	/**
+	 * The buffer and the length written into it since the last reset; with no
+	 * sink attached nothing is flushed, so JChunkedSerializer stages here.
+	 */
+	byte[] staged() {
+		return buffer;
+	}
+
+	int stagedLength() {
+		return position;
+	}
+
+	void reset() {
+		position = 0;
+	}
+
+	protected void write(JElement instance) {
+		if (instance instanceof JRaw) {
+			writeJRaw((JRaw) instance);
+			return;
+		}
+		switch (instance.type()) {
+		case ARRAY:
+			writeJArray((JArray) instance);
+			break;
+		case OBJECT:
+			writeJObject((JObject) instance);
+			break;
+		case NUMBER:
+			writeNumber((JNumber) instance);
+			break;
+		case STRING:
+			writeQuoted(((JStr) instance).chars());
+			break;
+		case NULL:
+			writeBytes(NULL);
+			break;
+		case BOOLEAN:
+			writeBytes(instance.asVal().bool() ? TRUE : FALSE);
+			break;
+		case BYTEARRAY:
+			writeChars(new String(((JByte) instance).byteArray()));
+			break;
+		case DATE:
+			writeDate((JDate) instance);
+			break;
+		case CLASS:
+			writeChars(((JClass) instance).classType().toString());
+			break;
+		}
+	}
+
+	private void writeJObject(JObject instance) {
+		String cached = instance.cachedString();
+		if (cached != null) {
+			writeChars(cached);
+			return;
+		}
+		if (shapes != null && instance.size() > 0) {
+			writeShaped(instance);
+			return;
+		}
+		writeByte('{');
+		boolean hasPrevious = false;
+		for (Iterator<Entry<String, JElement>> iterator = instance.rawIterator(); iterator.hasNext();) {
+			Entry<String, JElement> entry = iterator.next();
+			if (hasPrevious) {
+				writeByte(',');
+			}
+			writeQuoted(entry.getKey());
+			writeByte(':');
+			write(entry.getValue());
+			hasPrevious = true;
+		}
+		writeByte('}');
+	}
+
+	private void writeShaped(JObject instance) {
+		Iterator<Entry<String, JElement>> iterator = instance.rawIterator();
+		Entry<String, JElement> entry = iterator.next();
+		JShapes.Shape shape = shapes.lookup(instance.size(), entry.getKey());
+		byte[][] fragments = shape == null ? null : shape.bytes();
+		boolean matched = shape != null;
+		for (int i = 0;; i++) {
+			String key = entry.getKey();
+			if (matched && shape.matches(i, key)) {
+				writeBytes(fragments[i]);
+			} else {
+				matched = false;
+				writeByte(i == 0 ? '{' : ',');
+				writeQuoted(key);
+				writeByte(':');
+			}
+			write(entry.getValue());
+			if (!iterator.hasNext()) {
+				break;
+			}
+			entry = iterator.next();
+		}
+		writeByte('}');
+		if (!matched) {
+			shapes.learn(instance);
+		}
+	}
+
+	private void writeJArray(JArray instance) {
+		String cached = instance.cachedString();
+		if (cached != null) {
+			writeChars(cached);
+			return;
+		}
+		JNumType primitive = instance.primitiveType();
+		if (primitive != null) {
+			writePrimitives(instance, primitive);
+			return;
+		}
+		writeByte('[');
+		boolean hasPrevious = false;
+		for (Iterator<JElement> iterator = instance.rawIterator(); iterator.hasNext();) {
+			if (hasPrevious) {
+				writeByte(',');
+			}
+			write(iterator.next());
+			hasPrevious = true;
+		}
+		writeByte(']');
+	}
+
+	private void writePrimitives(JArray instance, JNumType type) {
+		writeByte('[');
+		if (type == JNumType.LONG) {
+			for (int i = 0, size = instance.size(); i < size; i++) {
+				if (i > 0) {
+					writeByte(',');
+				}
+				writeAscii(JNumberFormat.writeLong(instance.longAt(i), scratch, 0));
+			}
+		} else {
+			for (int i = 0, size = instance.size(); i < size; i++) {
+				if (i > 0) {
+					writeByte(',');
+				}
+				writeAscii(JNumberFormat.writeDouble(instance.doubleAt(i), scratch, 0));
+			}
+		}
+		writeByte(']');
+	}
+
+	private void writeJRaw(JRaw instance) {
+		JElement resolved = instance.resolved();
+		if (resolved != null) {
+			write(resolved);
+			return;
+		}
+		writeChars(CharBuffer.wrap(instance.source(), instance.offset(), instance.length()));
+	}
+
+	private void writeNumber(JNumber instance) {
+		switch (instance.numberType()) {
+		case INTEGER:
+		case LONG:
+			writeAscii(JNumberFormat.writeLong(instance.toLong(), scratch, 0));
+			break;
+		case DOUBLE:
+			writeAscii(JNumberFormat.writeDouble(instance.toDouble(), scratch, 0));
+			break;
+		default:
+			writeChars(instance.string());
+		}
+	}
+
+	private void writeDate(JDate instance) {
+		writeAscii(JElementSerializer.formatDate(instance, scratch));
+	}
+
+	/**
+	 * Copies the first {@code length} chars of the scratch buffer, which only
+	 * holds ASCII.
+	 */
+	private void writeAscii(int length) {
+		ensure(length);
+		byte[] bytes = buffer;
+		int pos = position;
+		for (int i = 0; i < length; i++) {
+			bytes[pos++] = (byte) scratch[i];
+		}
+		position = pos;
+	}
+
+	void writeQuoted(CharSequence seq) {
+		writeByte('"');
+		int length = seq.length();
+		for (int i = 0; i < length;) {
+			// copy the ASCII span without escapes
+			ensure(1);
+			byte[] bytes = buffer;
+			int pos = position;
+			int limit = Math.min(length, i + bytes.length - pos);
+			for (; i < limit; i++) {
+				char c = seq.charAt(i);
+				if (c >= 128 || ESCAPES[c] != null) break;
+				bytes[pos++] = (byte) c;
+			}
+			position = pos;
+			if (i < limit) {
+				char c = seq.charAt(i);
+				if (c < 128) {
+					writeBytes(ESCAPES[c]);
+					i++;
+				} else {
+					i = writeChar(seq, i, length);
+				}
+			}
+		}
+		writeByte('"');
+	}
+
+	private void writeChars(CharSequence seq) {
+		int length = seq.length();
+		for (int i = 0; i < length;) {
+			i = writeChar(seq, i, length);
+		}
+	}
+
+	/**
+	 * Encodes the char, or surrogate pair, at {@code i} and returns the index
+	 * that follows it. Unpaired surrogates are written as '?'.
+	 */
+	private int writeChar(CharSequence seq, int i, int end) {
+		char c = seq.charAt(i);
+		ensure(4);
+		byte[] bytes = buffer;
+		if (c < 0x80) {
+			bytes[position++] = (byte) c;
+		} else if (c < 0x800) {
+			bytes[position++] = (byte) (0xC0 | c >> 6);
+			bytes[position++] = (byte) (0x80 | c & 0x3F);
+		} else if (Character.isSurrogate(c)) {
+			if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(seq.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, seq.charAt(i + 1));
+				bytes[position++] = (byte) (0xF0 | codePoint >> 18);
+				bytes[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+				bytes[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+				bytes[position++] = (byte) (0x80 | codePoint & 0x3F);
+				return i + 2;
+			}
+			bytes[position++] = '?';
+		} else {
+			bytes[position++] = (byte) (0xE0 | c >> 12);
+			bytes[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+			bytes[position++] = (byte) (0x80 | c & 0x3F);
+		}
+		return i + 1;
+	}
+
+	void writeByte(int b) {
+		ensure(1);
+		buffer[position++] = (byte) b;
+	}
+
+	private void writeBytes(byte[] bytes) {
+		ensure(bytes.length);
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+
+	/**
+	 * Makes room for {@code n} more bytes, flushing to the sink or, without
+	 * one, growing the buffer.
+	 */
+	private void ensure(int n) {
+		if (position + n <= buffer.length) {
+			return;
+		}
+		if (out != null || channel != null || target != null || exporter != null) {
+			flush();
+			if (n <= buffer.length) {
+				return;
+			}
+		}
+		buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + n));
+	}
+
+	private void flush() {
+		if (position == 0) {
+			return;
+		}
+		try {
+			if (out != null) {
+				out.write(buffer, 0, position);
+			} else if (channel != null) {
+				ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, position);
+				while (bytes.hasRemaining()) {
+					channel.write(bytes);
+				}
+			} else if (target != null) {
+				if (target.remaining() < position) {
+					throw new BufferOverflowException();
+				}
+				target.put(buffer, 0, position);
+			} else if (exporter != null) {
+				exporter.put(buffer, position);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		position = 0;
+	}
+
+	private static byte[] ascii(String text) {
+		byte[] bytes = new byte[text.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) text.charAt(i);
+		}
+		return bytes;
+	}
+}
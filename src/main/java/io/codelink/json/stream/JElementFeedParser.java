@@ -0,0 +1,392 @@
+package io.codelink.json.stream;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import io.codelink.json.JArray;
+import io.codelink.json.JBool;
+import io.codelink.json.JElement;
+import io.codelink.json.JNull;
+import io.codelink.json.JObject;
+import io.codelink.json.JStr;
+
+/**
+ * Incremental UTF-8 parser for input that arrives in chunks, e.g. from a
+ * non-blocking channel. Each {@link #feed(ByteBuffer)} consumes the whole
+ * chunk and keeps the parse state until the next one, so it never blocks.
+ * Completed top level values are queued and taken with {@link #poll()}.
+ *
+ * <pre>
+ * while (channel.read(buffer) &gt; 0) {
+ * 	buffer.flip();
+ * 	if (parser.feed(buffer) == Status.ELEMENT_READY) {
+ * 		handle(parser.poll());
+ * 	}
+ * 	buffer.clear();
+ * }
+ * </pre>
+ */
+public class JElementFeedParser {
+
+	public enum Status {
+		NEED_MORE_INPUT, ELEMENT_READY
+	}
+
+	private static final int VALUE = 0;
+	private static final int EMPTY_ARRAY = 1;
+	private static final int NONEMPTY_ARRAY = 2;
+	private static final int EMPTY_OBJECT = 3;
+	private static final int NAME = 4;
+	private static final int COLON = 5;
+	private static final int NONEMPTY_OBJECT = 6;
+
+	private static final int NONE = 0;
+	private static final int IN_STRING = 1;
+	private static final int IN_NUMBER = 2;
+	private static final int IN_LITERAL = 3;
+
+	private final Deque<JElement> ready = new ArrayDeque<>();
+	private final JElementByteParser strings = new JElementByteParser();
+
+	private JElement[] containers = new JElement[16];
+	private String[] keys = new String[16];
+	private int[] states = new int[16];
+	private int depth;
+
+	private int token = NONE;
+	private boolean key;
+	private boolean escaped;
+	private byte[] raw = new byte[64];
+	private int rawLength;
+	private char[] number = new char[32];
+	private int numberLength;
+	private String literal;
+	private JElement literalValue;
+	private int literalMatched;
+
+	private byte[] array;
+	private ByteBuffer buffer;
+	private long position;
+
+	private JDecimalMode decimalMode = JDecimalMode.BIG_DECIMAL;
+
+	public JElementFeedParser decimalMode(JDecimalMode mode) {
+		decimalMode = mode;
+		return this;
+	}
+
+	/**
+	 * Consumes all remaining bytes of the chunk, which may then be reused by
+	 * the caller.
+	 */
+	public Status feed(ByteBuffer chunk) {
+		int index = chunk.position();
+		int limit = chunk.limit();
+		long base = position - index;
+		if (chunk.hasArray()) {
+			array = chunk.array();
+			index += chunk.arrayOffset();
+			limit += chunk.arrayOffset();
+			base -= chunk.arrayOffset();
+		} else {
+			buffer = chunk;
+		}
+		try {
+			while (index < limit) {
+				position = base + index;
+				index = consume(index, limit);
+			}
+			position = base + limit;
+		} finally {
+			array = null;
+			buffer = null;
+		}
+		((Buffer) chunk).position(chunk.limit());
+		return status();
+	}
+
+	public Status feed(byte[] chunk, int offset, int length) {
+		return feed(ByteBuffer.wrap(chunk, offset, length));
+	}
+
+	/**
+	 * Signals that no more input will arrive, completing a trailing top level
+	 * number. Fails if a value is still incomplete.
+	 */
+	public Status endOfInput() {
+		if (token == IN_NUMBER && depth == 0) {
+			completeNumber();
+		}
+		if (token != NONE || depth > 0) {
+			throw new IllegalArgumentException("Unexpected end of input at offset " + position);
+		}
+		return status();
+	}
+
+	public JElement poll() {
+		return ready.poll();
+	}
+
+	public Status status() {
+		return ready.isEmpty() ? Status.NEED_MORE_INPUT : Status.ELEMENT_READY;
+	}
+
+	public void reset() {
+		ready.clear();
+		Arrays.fill(containers, null);
+		depth = 0;
+		token = NONE;
+		escaped = false;
+		literalMatched = 0;
+		rawLength = 0;
+		numberLength = 0;
+		position = 0;
+	}
+
+	private int byteAt(int index) {
+		return array != null ? array[index] : buffer.get(index);
+	}
+
+	private int consume(int index, int limit) {
+		switch (token) {
+		case IN_STRING:
+			return continueString(index, limit);
+		case IN_NUMBER:
+			int c = byteAt(index);
+			if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '-' || c == '+') {
+				appendNumber(c);
+				return index + 1;
+			}
+			completeNumber();
+			return index;
+		case IN_LITERAL:
+			if (byteAt(index) != literal.charAt(literalMatched)) throw syntaxError("Invalid literal", byteAt(index));
+			if (++literalMatched == literal.length()) {
+				token = NONE;
+				complete(literalValue);
+			}
+			return index + 1;
+		default:
+			return structural(byteAt(index), index, limit);
+		}
+	}
+
+	private int structural(int c, int index, int limit) {
+		if (c >= 0 && c <= ' ') return index + 1;
+		switch (states[depth]) {
+		case EMPTY_ARRAY:
+			if (c == ']') {
+				closeContainer();
+				return index + 1;
+			}
+			return startValue(c, index, limit);
+		case VALUE:
+			return startValue(c, index, limit);
+		case NONEMPTY_ARRAY:
+			if (c == ',') {
+				states[depth] = VALUE;
+			} else if (c == ']') {
+				closeContainer();
+			} else {
+				throw syntaxError("expecting ',' or ']'", c);
+			}
+			return index + 1;
+		case EMPTY_OBJECT:
+			if (c == '}') {
+				closeContainer();
+				return index + 1;
+			}
+			return startName(c, index, limit);
+		case NAME:
+			return startName(c, index, limit);
+		case COLON:
+			if (c != ':') throw syntaxError("expecting ':'", c);
+			states[depth] = VALUE;
+			return index + 1;
+		default:
+			if (c == ',') {
+				states[depth] = NAME;
+			} else if (c == '}') {
+				closeContainer();
+			} else {
+				throw syntaxError("expecting ',' or '}'", c);
+			}
+			return index + 1;
+		}
+	}
+
+	private int startName(int c, int index, int limit) {
+		if (c != '"') throw syntaxError("expecting '\"'", c);
+		key = true;
+		return startString(index, limit);
+	}
+
+	private int startValue(int c, int index, int limit) {
+		switch (c) {
+		case '{':
+			push(new JObject(), EMPTY_OBJECT);
+			return index + 1;
+		case '[':
+			push(new JArray(), EMPTY_ARRAY);
+			return index + 1;
+		case '"':
+			key = false;
+			return startString(index, limit);
+		case 't':
+			return startLiteral("true", JBool.TRUE, index);
+		case 'f':
+			return startLiteral("false", JBool.FALSE, index);
+		case 'n':
+			return startLiteral("null", JNull.NOTHING, index);
+		case '0':
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+		case '6':
+		case '7':
+		case '8':
+		case '9':
+		case '-':
+		case '+':
+			numberLength = 0;
+			appendNumber(c);
+			token = IN_NUMBER;
+			return index + 1;
+		default:
+			throw syntaxError("Cannot parse element", c);
+		}
+	}
+
+	private int startString(int index, int limit) {
+		escaped = false;
+		int end = findQuote(index + 1, limit);
+		if (end < limit && array != null) {
+			// the whole token is in this chunk, decode it in place
+			completeString(strings.decodeString(array, index, end + 1 - index));
+			return end + 1;
+		}
+		rawLength = 0;
+		token = IN_STRING;
+		return copyRaw(index, Math.min(end + 1, limit), end < limit);
+	}
+
+	private int continueString(int index, int limit) {
+		int end = findQuote(index, limit);
+		return copyRaw(index, Math.min(end + 1, limit), end < limit);
+	}
+
+	private int copyRaw(int from, int to, boolean closed) {
+		int length = to - from;
+		if (rawLength + length > raw.length) {
+			raw = Arrays.copyOf(raw, Math.max(raw.length << 1, rawLength + length));
+		}
+		if (array != null) {
+			System.arraycopy(array, from, raw, rawLength, length);
+		} else {
+			for (int i = from; i < to; i++) {
+				raw[rawLength + i - from] = buffer.get(i);
+			}
+		}
+		rawLength += length;
+		if (closed) {
+			token = NONE;
+			completeString(strings.decodeString(raw, 0, rawLength));
+		}
+		return to;
+	}
+
+	/**
+	 * Returns the index of the closing quote, or limit when the string
+	 * continues in the next chunk. Tracks a pending escape across chunks.
+	 */
+	private int findQuote(int index, int limit) {
+		boolean escape = escaped;
+		for (; index < limit; index++) {
+			int c = byteAt(index);
+			if (escape) {
+				escape = false;
+			} else if (c == '\\') {
+				escape = true;
+			} else if (c == '"') {
+				escaped = false;
+				return index;
+			}
+		}
+		escaped = escape;
+		return limit;
+	}
+
+	private void completeString(String value) {
+		if (key) {
+			keys[depth] = value;
+			states[depth] = COLON;
+		} else {
+			complete(new JStr(value));
+		}
+	}
+
+	private void appendNumber(int c) {
+		if (numberLength == number.length) {
+			number = Arrays.copyOf(number, numberLength << 1);
+		}
+		number[numberLength++] = (char) c;
+	}
+
+	private void completeNumber() {
+		token = NONE;
+		complete(JNumberDecoder.decode(number, 0, numberLength, decimalMode));
+	}
+
+	private int startLiteral(String literal, JElement value, int index) {
+		this.literal = literal;
+		this.literalValue = value;
+		this.literalMatched = 1;
+		token = IN_LITERAL;
+		return index + 1;
+	}
+
+	private void push(JElement container, int state) {
+		if (++depth == states.length) {
+			containers = Arrays.copyOf(containers, depth << 1);
+			keys = Arrays.copyOf(keys, depth << 1);
+			states = Arrays.copyOf(states, depth << 1);
+		}
+		containers[depth] = container;
+		states[depth] = state;
+	}
+
+	private void closeContainer() {
+		JElement container = containers[depth];
+		containers[depth] = null;
+		keys[depth] = null;
+		depth--;
+		if (container.isArray() && container.asArray().size() == 0) {
+			container = JArray.EMPTY;
+		}
+		complete(container);
+	}
+
+	private void complete(JElement value) {
+		if (depth == 0) {
+			ready.add(value);
+			return;
+		}
+		JElement container = containers[depth];
+		if (container.isArray()) {
+			container.asArray().add(value);
+			states[depth] = NONEMPTY_ARRAY;
+		} else {
+			container.asObject().set(keys[depth], value);
+			states[depth] = NONEMPTY_OBJECT;
+		}
+	}
+
+	private IllegalArgumentException syntaxError(String message, int c) {
+		return new IllegalArgumentException(message + " but got '" + (char) c + "' at offset " + position);
+	}
+}
@@ -1,7 +1,7 @@
 package io.codelink.json.stream;
 
 import java.io.Writer;
-import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -21,25 +21,53 @@ import io.codelink.json.JElement;
 import io.codelink.json.JNull;
 import io.codelink.json.JNumber;
 import io.codelink.json.JObject;
+import io.codelink.json.JRaw;
 import io.codelink.json.JStr;
-import io.codelink.json.JVal;
 
 public class JElementParser {
 
 	public static final boolean XML_ATTRIBUTES_STRING = true;
 
+	public static final int MAX_KEY_LENGTH = 256;
+	public static final int MAX_KEYS = 8192;
+
 	char[] charArray;
 
-	private int __index;
-	private char __currentChar;
+	int __index;
+	char __currentChar;
 
 	private int lastIndex;
 
+	private JElementByteParser byteParser;
+
+	private final JSymbolTable keys = new JSymbolTable(MAX_KEY_LENGTH, MAX_KEYS);
+	private JSymbolTable values;
+
+	private JDecimalMode decimalMode = JDecimalMode.BIG_DECIMAL;
+
+	private boolean stringViews;
+
+	private int dedupMaxLength;
+	private int dedupMaxEntries;
+
+	/**
+	 * A shared parser configured as this one, for the JRaw values of lazy
+	 * parses to decode with.
+	 */
+	private JSharedParser shared;
+
+	private boolean busy;
+
+	private final StringBuilder builder = new StringBuilder(32);
+
+	final JArraySizes arraySizes = new JArraySizes();
+
 	public JElement parse(String json) {
 		char[] chars = json.toCharArray();
 		lastIndex = chars.length - 1;
 		__index = 0;
 		charArray = chars;
+		arraySizes.reset();
 
 		return decodeValue();
 	}
@@ -48,16 +76,187 @@ public class JElementParser {
 		lastIndex = chars.length - 1;
 		__index = 0;
 		charArray = chars;
+		arraySizes.reset();
+
+		return decodeValue();
+	}
+
+	/**
+	 * Parses the value starting at {@code offset}; the value must end within
+	 * the range.
+	 */
+	public JElement parse(char[] chars, int offset, int length) {
+		lastIndex = offset + length - 1;
+		__index = offset;
+		charArray = chars;
+		arraySizes.reset();
 
 		return decodeValue();
 	}
 
+	/**
+	 * Parses only the structure of the top level object or array. Each child
+	 * is kept as a {@link JRaw} range of the source and decoded when it is
+	 * first accessed, so untouched subtrees cost neither decoding nor
+	 * garbage. The returned tree keeps a reference to the chars.
+	 */
+	public JElement parseLazy(String json) {
+		return parseLazy(json.toCharArray());
+	}
+
+	public JElement parseLazy(char[] chars) {
+		return parseLazy(chars, 0, chars.length);
+	}
+
+	public JElement parseLazy(char[] chars, int offset, int length) {
+		lastIndex = offset + length - 1;
+		__index = offset;
+		charArray = chars;
+		arraySizes.reset();
+
+		skipWhiteSpaceIfNeeded();
+		switch (__currentChar) {
+		case '{':
+			return decodeLazyJObject();
+		case '[':
+			return decodeLazyJsonArray();
+		default:
+			return decodeValue();
+		}
+	}
+
+	/**
+	 * Decodes only the given dotted paths, as understood by JObject.get, from
+	 * a document whose top level is an object. Every other value is skipped
+	 * by matching brackets and quotes, and the result holds just the paths
+	 * found.
+	 */
+	public JObject parse(String json, String... paths) {
+		return parse(json.toCharArray(), paths);
+	}
+
+	public JObject parse(char[] chars, String... paths) {
+		lastIndex = chars.length - 1;
+		__index = 0;
+		charArray = chars;
+		arraySizes.reset();
+
+		skipWhiteSpaceIfNeeded();
+		if (__currentChar != '{') {
+			throw new IllegalArgumentException("Path projection needs a JObject but got current char " + __currentChar);
+		}
+		return decodeProjectedJObject(JPathTree.of(paths));
+	}
+
+	public JElement parse(byte[] utf8) {
+		return parse(utf8, 0, utf8.length);
+	}
+
+	public JElement parse(byte[] utf8, int offset, int length) {
+		return byteParser().parse(utf8, offset, length);
+	}
+
+	public JElement parse(ByteBuffer utf8) {
+		return byteParser().parse(utf8);
+	}
+
+	private JElementByteParser byteParser() {
+		if (byteParser == null) {
+			byteParser = new JElementByteParser().decimalMode(decimalMode);
+			if (values != null) {
+				byteParser.deduplicateStrings(values);
+			}
+		}
+		return byteParser;
+	}
+
+	/**
+	 * Selects how numbers with a fraction or an exponent are decoded.
+	 */
+	public JElementParser decimalMode(JDecimalMode mode) {
+		decimalMode = mode;
+		shared = null;
+		if (byteParser != null) {
+			byteParser.decimalMode(mode);
+		}
+		return this;
+	}
+
+	/**
+	 * Makes string values without escapes keep a view of the parsed chars
+	 * instead of a String of their own, see {@link JStr#JStr(char[], int, int)}.
+	 * Shared short values are still shared when deduplication is enabled.
+	 */
+	public JElementParser stringViews(boolean enabled) {
+		stringViews = enabled;
+		shared = null;
+		return this;
+	}
+
+	/**
+	 * Makes this parser return one shared String for equal string values of
+	 * up to {@code maxLength} chars, remembering at most {@code maxEntries}
+	 * distinct values. Object keys are always shared.
+	 */
+	public JElementParser deduplicateStrings(int maxLength, int maxEntries) {
+		values = new JSymbolTable(maxLength, maxEntries);
+		dedupMaxLength = maxLength;
+		dedupMaxEntries = maxEntries;
+		shared = null;
+		if (byteParser != null) {
+			byteParser.deduplicateStrings(values);
+		}
+		return this;
+	}
+
+	JSharedParser shared() {
+		if (shared == null) {
+			shared = new JSharedParser(decimalMode, stringViews, dedupMaxLength, dedupMaxEntries);
+		}
+		return shared;
+	}
+
+	/**
+	 * Used by the JSharedParser that owns this parser, so JRaw values decode
+	 * with it.
+	 */
+	void shared(JSharedParser parser) {
+		shared = parser;
+	}
+
+	/**
+	 * Drops the cursor and the reference to the parsed chars, so an idle
+	 * parser does not retain the last document.
+	 */
+	void reset() {
+		charArray = null;
+		__index = 0;
+		lastIndex = 0;
+	}
+
+	/**
+	 * Takes the parser for a JSharedParser call, or returns false if a call
+	 * on this thread holds it already, whatever its input kind.
+	 */
+	boolean acquire() {
+		if (busy) {
+			return false;
+		}
+		busy = true;
+		return true;
+	}
+
+	void release() {
+		reset();
+		busy = false;
+	}
+
 	protected JElement decodeValue() {
 		JElement value = null;
 		skipWhiteSpaceIfNeeded();
 		switch (__currentChar) {
 		case '"':
-			value = new JStr(decodeString());
+			value = decodeJStr();
 			break;
 		case 't':
 			value = decodeTrue();
@@ -102,7 +301,7 @@ public class JElementParser {
 		for (; __index < this.charArray.length; __index++) {
 			skipWhiteSpaceIfNeeded();
 			if (__currentChar == '"') {
-				String key = decodeString();
+				String key = decodeKey();
 				skipWhiteSpaceIfNeeded();
 				if (__currentChar != ':') {
 					throw new IllegalArgumentException("expecting current character to be " + __currentChar + "\n");
@@ -126,124 +325,144 @@ public class JElementParser {
 		return object;
 	}
 
-	protected String decodeString() {
-		char[] array = charArray;
-		int index = __index;
-		char c = array[index];
-		if (index < array.length && c == '"') {
-			index++;
-		}
+	protected final String decodeKey() {
+		return decodeSymbol(keys);
+	}
 
-		boolean escape = false;
-		StringBuilder str = new StringBuilder(32);
+	protected final String decodeStringValue() {
+		return values != null ? decodeSymbol(values) : decodeString();
+	}
 
-		for (; index < array.length; index++) {
-			c = array[index];
-			if (c == '"') {
-				if (!escape) break;
-				escape = false;
-			} else if (c == 92 && array[index + 1] != '\"' && array[index + 2] != '\"') {
-				//escape = true;
-				str.append("\\\\");
-				continue;
-			} else if (c == 92 && array[index + 1] != '\"') {
-				if (array.length > (index + 3) && array[index + 2] == '\"' && array[index + 3] == ',') {
-					//escape = true;
-					str.append("\\\\");
-					continue;
+	/**
+	 * Decodes a string value, as a view of the source chars when string views
+	 * are enabled and the string has no escapes.
+	 */
+	protected final JStr decodeJStr() {
+		if (stringViews) {
+			char[] array = charArray;
+			int start = __index + 1;
+			for (int index = start; index < array.length; index++) {
+				char c = array[index];
+				if (c == '"') {
+					if (values != null && values.accepts(index - start)) break;
+					__index = index + 1;
+					return new JStr(array, start, index - start);
 				}
-			} else if (c == 92 && array[index + 1] == '\"' && array[index + 2] == ',') {
-				if (array.length > (index + 3) && array[index + 3] == '\"') {
-					str.append("\\\\\"");
-					index++;
-					continue;
-				}
-			} else if (c == 92 && array[index + 1] == '\"' && array[index + 2] != ',') {
-				str.append("\\\\\"");
-				index++;
-				continue;
-			} else if (c == '\r') {
-				str.append("\\r");
-				continue;
-			} else if (c == '\n') {
-				str.append("\\n");
-				continue;
-			} else if (c == '\t') {
-				str.append("\\t");
-				continue;
-			} else if (c == '\b') {
-				str.append("\\b");
-				continue;
-			} else if (c == '\f') {
-				str.append("\\f");
-				continue;
+				if (c == '\\') break;
 			}
-			str.append(c);
 		}
+		return new JStr(decodeStringValue());
+	}
 
-		if (index < charArray.length) {
-			index++;
+	/**
+	 * Looks plain strings up in place, without escapes to decode, and hands
+	 * anything else to decodeString.
+	 */
+	private String decodeSymbol(JSymbolTable table) {
+		char[] array = charArray;
+		int start = __index + 1;
+		for (int index = start; index < array.length; index++) {
+			char c = array[index];
+			if (c == '"') {
+				__index = index + 1;
+				return table.lookup(array, start, index - start);
+			}
+			if (c == '\\') break;
 		}
-		__index = index;
-
-		return str.toString();
+		return decodeString();
 	}
 
-	private final JVal decodeNumber() {
+	/**
+	 * Decodes the string starting at the opening quote. Spans without escapes
+	 * are copied in bulk and every escape is decoded, unicode escapes and
+	 * surrogate pairs included.
+	 */
+	protected String decodeString() {
 		char[] array = charArray;
-		int index = __index, decimalIdx = -1;
-		char currentChar = array[index];
-
-		boolean signed = false;
-		boolean cientific = false;
-		boolean first = true;
-		int plusCount = 0;
-		int startIndex = index;
+		int start = __index + 1;
+		int index = start;
 		for (; index < array.length; index++) {
-			currentChar = array[index];
-			if (currentChar == '-') {
-				if (signed || !first) throw new NumberFormatException("Number signed twice!");
-				signed = true;
-			} else if (currentChar == '+') {
-				if (plusCount > 2 || (!cientific && signed) || (cientific && !first && plusCount == 1 && !signed)) throw new NumberFormatException("Number signed twice!");
-				plusCount++;
-				signed = true;
-				if (!cientific) startIndex++;
-			} else if (currentChar < 33 || isDelimiter(currentChar)) {
-				index--;
-				break;
-			} else if (currentChar == '.') {
-				if (decimalIdx > -1) throw new NumberFormatException("Decimal separator found twice!");
-				decimalIdx = index;
-			} else if (!Character.isDigit(currentChar)) {
-				if (currentChar == 'e' || currentChar == 'E') {
-					if (cientific) throw new NumberFormatException("Found invalid digit char!");
-					cientific = true;
-				} else {
-					throw new NumberFormatException("Found invalid digit char!");
-				}
-
+			char c = array[index];
+			if (c == '"') {
+				__index = index + 1;
+				return new String(array, start, index - start);
 			}
-			first = false;
+			if (c == '\\') break;
 		}
 
-		if (index < charArray.length) {
-			index++;
+		StringBuilder str = builder;
+		str.setLength(0);
+		while (index < array.length) {
+			str.append(array, start, index - start);
+			if (array[index] == '"') {
+				__index = index + 1;
+				return str.toString();
+			}
+			index = decodeEscape(array, index, str);
+			for (start = index; index < array.length; index++) {
+				char c = array[index];
+				if (c == '"' || c == '\\') break;
+			}
 		}
-		__index = index;
+		throw new IllegalArgumentException("Did not find end of string");
+	}
 
-		if (decimalIdx > -1) {
-			return new JNumber(new BigDecimal(array, startIndex, (index - startIndex)));
+	/**
+	 * Appends the escape starting at the backslash in array[index] and returns
+	 * the index that follows it.
+	 */
+	private static int decodeEscape(char[] array, int index, StringBuilder str) {
+		if (index + 1 >= array.length) {
+			throw new IllegalArgumentException("Did not find end of string");
 		}
-
-		String value = new String(array, startIndex, (index - startIndex));
-		Long number = Long.valueOf(value);
-
-		if (number > Integer.MAX_VALUE) {
-			return new JNumber(number);
+		char c = array[index + 1];
+		switch (c) {
+		case 'b':
+			str.append('\b');
+			break;
+		case 'f':
+			str.append('\f');
+			break;
+		case 'n':
+			str.append('\n');
+			break;
+		case 'r':
+			str.append('\r');
+			break;
+		case 't':
+			str.append('\t');
+			break;
+		case 'u':
+			if (index + 6 > array.length) {
+				throw new IllegalArgumentException("Invalid unicode escape in string");
+			}
+			int value = 0;
+			for (int i = index + 2; i < index + 6; i++) {
+				int digit = Character.digit(array[i], 16);
+				if (digit < 0) {
+					throw new IllegalArgumentException("Invalid hex digit in unicode escape: " + array[i]);
+				}
+				value = (value << 4) | digit;
+			}
+			// the halves of a surrogate pair are appended one escape at a time
+			str.append((char) value);
+			return index + 6;
+		default:
+			str.append(c);
 		}
+		return index + 2;
+	}
 
-		return new JNumber(number.intValue());
+	protected final JNumber decodeNumber() {
+		char[] array = charArray;
+		int start = __index;
+		int index = start;
+		for (; index < array.length; index++) {
+			char c = array[index];
+			if (c < 33 || isDelimiter(c)) break;
+		}
+		__index = index;
+		return JNumberDecoder.decode(array, start, index - start, decimalMode);
 	}
 
 	public static boolean isDelimiter(int c) {
@@ -264,7 +483,7 @@ public class JElementParser {
 			__index++;
 			return JArray.EMPTY;
 		}
-		list = new JArray();
+		list = arraySizes.open();
 		char c;
 		loop: while (this.hasMore()) {
 			JElement arrayItem = decodeValue();
@@ -301,7 +520,148 @@ public class JElementParser {
 		if (!foundEnd) {
 			throw new IllegalArgumentException("Did not find end of Json Array");
 		}
-		return list;
+		return arraySizes.close(list);
+	}
+
+	protected JObject decodeLazyJObject() {
+		__index++;
+		JObject object = new JObject();
+		for (; __index < this.charArray.length; __index++) {
+			skipWhiteSpaceIfNeeded();
+			if (__currentChar == '"') {
+				String key = decodeKey();
+				skipWhiteSpaceIfNeeded();
+				if (__currentChar != ':') {
+					throw new IllegalArgumentException("expecting current character to be " + __currentChar + "\n");
+				}
+
+				__index++;
+				skipWhiteSpaceIfNeeded();
+				int start = __index;
+				skipValue();
+				object.set(key, new JRaw(charArray, start, __index - start, shared()));
+				skipWhiteSpaceIfNeeded();
+			}
+			if (__currentChar == '}') {
+				__index++;
+				break;
+			} else if (__currentChar != ',') {
+				throw new IllegalArgumentException("expecting '}' or ',' but got current char " + __currentChar);
+			}
+		}
+		return object;
+	}
+
+	private JObject decodeProjectedJObject(JPathTree paths) {
+		__index++;
+		JObject object = new JObject();
+		for (; __index < this.charArray.length; __index++) {
+			skipWhiteSpaceIfNeeded();
+			if (__currentChar == '"') {
+				String key = decodeKey();
+				JPathTree path = paths.child(key);
+				skipWhiteSpaceIfNeeded();
+				if (__currentChar != ':') {
+					throw new IllegalArgumentException("expecting current character to be " + __currentChar + "\n");
+				}
+
+				__index++;
+				skipWhiteSpaceIfNeeded();
+				if (path == null) {
+					skipValue();
+				} else if (path.selected()) {
+					object.set(key, decodeValue());
+				} else if (__currentChar == '{') {
+					JObject child = decodeProjectedJObject(path);
+					if (child.size() > 0) {
+						object.set(key, child);
+					}
+				} else {
+					skipValue();
+				}
+				skipWhiteSpaceIfNeeded();
+			}
+			if (__currentChar == '}') {
+				__index++;
+				break;
+			} else if (__currentChar != ',') {
+				throw new IllegalArgumentException("expecting '}' or ',' but got current char " + __currentChar);
+			}
+		}
+		return object;
+	}
+
+	protected JArray decodeLazyJsonArray() {
+		__index++;
+		skipWhiteSpaceIfNeeded();
+		if (__currentChar == ']') {
+			__index++;
+			return JArray.EMPTY;
+		}
+		JArray list = arraySizes.open();
+		while (__index < charArray.length) {
+			int start = __index;
+			skipValue();
+			list.add(new JRaw(charArray, start, __index - start, shared()));
+			skipWhiteSpaceIfNeeded();
+			if (__currentChar == ',') {
+				__index++;
+				skipWhiteSpaceIfNeeded();
+			} else if (__currentChar == ']') {
+				__index++;
+				return arraySizes.close(list);
+			} else {
+				throw new IllegalArgumentException(String.format("expecting a ',' or a ']', but got \nthe current character of %s on array index of %s \n", __currentChar, list.size()));
+			}
+		}
+		throw new IllegalArgumentException("Did not find end of Json Array");
+	}
+
+	/**
+	 * Moves past the value starting at the current index, matching brackets
+	 * and quotes only, without decoding or allocating anything.
+	 */
+	protected final void skipValue() {
+		char[] array = charArray;
+		int index = __index;
+		char c = array[index];
+		if (c == '{' || c == '[') {
+			int depth = 0;
+			for (; index < array.length; index++) {
+				c = array[index];
+				if (c == '"') {
+					index = skipString(array, index);
+				} else if (c == '{' || c == '[') {
+					depth++;
+				} else if ((c == '}' || c == ']') && --depth == 0) {
+					break;
+				}
+			}
+			if (depth != 0) {
+				throw new IllegalArgumentException("Did not find end of " + (array[__index] == '{' ? "JObject" : "Json Array"));
+			}
+			index++;
+		} else if (c == '"') {
+			index = skipString(array, index) + 1;
+		} else {
+			for (; index < array.length; index++) {
+				c = array[index];
+				if (c <= ' ' || isDelimiter(c)) break;
+			}
+		}
+		__index = index;
+	}
+
+	static int skipString(char[] array, int index) {
+		for (index++; index < array.length; index++) {
+			char c = array[index];
+			if (c == '\\') {
+				index++;
+			} else if (c == '"') {
+				return index;
+			}
+		}
+		throw new IllegalArgumentException("Did not find end of string");
 	}
 
 	protected final JNull decodeNull() {
@@ -361,8 +721,7 @@ public class JElementParser {
 		xstream.setMode(XStream.NO_REFERENCES);
 		xstream.alias(alias, clazz);
 
-		JElementParser parser = new JElementParser();
-		JElement retorno = parser.parse(xstream.toXML(object).toCharArray());
+		JElement retorno = JSharedParser.DEFAULT.parse(xstream.toXML(object).toCharArray());
 		return retorno;
 	}
 
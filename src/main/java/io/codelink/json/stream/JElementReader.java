@@ -0,0 +1,421 @@
+package io.codelink.json.stream;
+
+import static io.codelink.json.stream.JToken.END_ARRAY;
+import static io.codelink.json.stream.JToken.END_DOCUMENT;
+import static io.codelink.json.stream.JToken.END_OBJECT;
+import static io.codelink.json.stream.JToken.FALSE;
+import static io.codelink.json.stream.JToken.NAME;
+import static io.codelink.json.stream.JToken.NULL;
+import static io.codelink.json.stream.JToken.NUMBER;
+import static io.codelink.json.stream.JToken.START_ARRAY;
+import static io.codelink.json.stream.JToken.START_OBJECT;
+import static io.codelink.json.stream.JToken.STRING;
+import static io.codelink.json.stream.JToken.TRUE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import io.codelink.json.JArray;
+import io.codelink.json.JBool;
+import io.codelink.json.JElement;
+import io.codelink.json.JNull;
+import io.codelink.json.JNumber;
+import io.codelink.json.JObject;
+import io.codelink.json.JStr;
+
+/**
+ * Pull parser that reads a document token by token through a fixed size,
+ * refillable buffer, so memory use does not depend on the document size.
+ * {@link #readElement()} builds a JElement for the subtree at the current
+ * token only, and {@link #skipChildren()} skips one without allocating.
+ *
+ * <pre>
+ * reader.next(); // START_ARRAY
+ * while (reader.next() != JToken.END_ARRAY) {
+ * 	JObject record = reader.readElement().asObject();
+ * }
+ * </pre>
+ */
+public class JElementReader implements Closeable {
+
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_OBJECT = 2;
+	private static final int DANGLING_NAME = 3;
+	private static final int NONEMPTY_OBJECT = 4;
+	private static final int EMPTY_ARRAY = 5;
+	private static final int NONEMPTY_ARRAY = 6;
+
+	private final Reader in;
+	private final char[] buffer;
+	private int pos;
+	private int limit;
+	private long consumed;
+
+	private int[] stack = new int[32];
+	private String[] names = new String[32];
+	private int depth;
+
+	private JToken token;
+	private String name;
+	private String text;
+	private char[] numberChars = new char[32];
+	private int numberLength;
+	private boolean skipping;
+
+	private final StringBuilder builder = new StringBuilder();
+	private final JSymbolTable keys = new JSymbolTable(JElementParser.MAX_KEY_LENGTH, JElementParser.MAX_KEYS);
+	private JDecimalMode decimalMode = JDecimalMode.BIG_DECIMAL;
+
+	public JElementReader(Reader in) {
+		this(in, DEFAULT_BUFFER_SIZE);
+	}
+
+	public JElementReader(Reader in, int bufferSize) {
+		if (in == null) throw new IllegalArgumentException("Reader cannot be null!");
+		if (bufferSize < 16) throw new IllegalArgumentException("Buffer size must be at least 16 chars!");
+		this.in = in;
+		this.buffer = new char[bufferSize];
+		this.stack[0] = EMPTY_DOCUMENT;
+	}
+
+	public JElementReader(InputStream in) {
+		this(new InputStreamReader(in, StandardCharsets.UTF_8), DEFAULT_BUFFER_SIZE);
+	}
+
+	public JElementReader(InputStream in, int bufferSize) {
+		this(new InputStreamReader(in, StandardCharsets.UTF_8), bufferSize);
+	}
+
+	public JElementReader decimalMode(JDecimalMode mode) {
+		decimalMode = mode;
+		return this;
+	}
+
+	/**
+	 * Advances to the next token. Several top level values may follow each
+	 * other; END_DOCUMENT is returned once the input is exhausted.
+	 */
+	public JToken next() throws IOException {
+		int c;
+		switch (stack[depth]) {
+		case EMPTY_OBJECT:
+			c = nextNonWhitespace();
+			if (c == '}') return endContainer(END_OBJECT);
+			return readName(c);
+		case NONEMPTY_OBJECT:
+			c = nextNonWhitespace();
+			if (c == '}') return endContainer(END_OBJECT);
+			if (c != ',') throw syntaxError("expecting '}' or ','", c);
+			return readName(nextNonWhitespace());
+		case DANGLING_NAME:
+			c = nextNonWhitespace();
+			if (c != ':') throw syntaxError("expecting ':'", c);
+			stack[depth] = NONEMPTY_OBJECT;
+			return readValue(nextNonWhitespace());
+		case EMPTY_ARRAY:
+			c = nextNonWhitespace();
+			if (c == ']') return endContainer(END_ARRAY);
+			stack[depth] = NONEMPTY_ARRAY;
+			return readValue(c);
+		case NONEMPTY_ARRAY:
+			c = nextNonWhitespace();
+			if (c == ']') return endContainer(END_ARRAY);
+			if (c != ',') throw syntaxError("expecting ']' or ','", c);
+			return readValue(nextNonWhitespace());
+		default:
+			c = nextNonWhitespace();
+			if (c == -1) return token = END_DOCUMENT;
+			stack[depth] = NONEMPTY_DOCUMENT;
+			return readValue(c);
+		}
+	}
+
+	public JToken token() {
+		return token;
+	}
+
+	/**
+	 * The name of the property whose value is the current token, or of the
+	 * current NAME token.
+	 */
+	public String name() {
+		return name;
+	}
+
+	/**
+	 * Text of the current STRING, NUMBER or NAME token.
+	 */
+	public String string() {
+		switch (token) {
+		case STRING:
+			return text;
+		case NAME:
+			return name;
+		case NUMBER:
+			if (text == null) text = new String(numberChars, 0, numberLength);
+			return text;
+		default:
+			throw new IllegalStateException("Current token " + token + " has no text!");
+		}
+	}
+
+	public JNumber number() {
+		if (token != NUMBER) throw new IllegalStateException("Current token " + token + " is not a number!");
+		return JNumberDecoder.decode(numberChars, 0, numberLength, decimalMode);
+	}
+
+	public int depth() {
+		return depth;
+	}
+
+	/**
+	 * Skips the children of the current START_OBJECT or START_ARRAY token,
+	 * leaving the reader on the matching end token. Does nothing for other
+	 * tokens.
+	 */
+	public void skipChildren() throws IOException {
+		if (token != START_OBJECT && token != START_ARRAY) return;
+		int target = depth - 1;
+		skipping = true;
+		try {
+			while (depth > target) {
+				next();
+			}
+		} finally {
+			skipping = false;
+		}
+	}
+
+	/**
+	 * Builds the JElement rooted at the current token, advancing to the first
+	 * token when nothing has been read yet. Containers are consumed up to and
+	 * including their end token.
+	 */
+	public JElement readElement() throws IOException {
+		if (token == null) next();
+		switch (token) {
+		case START_OBJECT:
+			JObject object = new JObject();
+			while (next() != END_OBJECT) {
+				String key = name;
+				next();
+				object.set(key, readElement());
+			}
+			return object;
+		case START_ARRAY:
+			if (next() == END_ARRAY) return JArray.EMPTY;
+			JArray array = new JArray();
+			do {
+				array.add(readElement());
+			} while (next() != END_ARRAY);
+			return array;
+		case STRING:
+			return new JStr(text);
+		case NUMBER:
+			return number();
+		case TRUE:
+			return JBool.TRUE;
+		case FALSE:
+			return JBool.FALSE;
+		case NULL:
+			return JNull.NOTHING;
+		default:
+			throw new IllegalStateException("No element starts at token " + token);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private JToken readName(int c) throws IOException {
+		if (c != '"') throw syntaxError("expecting '\"'", c);
+		name = readString(keys);
+		names[depth] = name;
+		stack[depth] = DANGLING_NAME;
+		return token = NAME;
+	}
+
+	private JToken readValue(int c) throws IOException {
+		text = null;
+		switch (c) {
+		case '{':
+			push(EMPTY_OBJECT);
+			return token = START_OBJECT;
+		case '[':
+			push(EMPTY_ARRAY);
+			return token = START_ARRAY;
+		case '"':
+			text = readString(null);
+			return token = STRING;
+		case 't':
+			readLiteral("rue");
+			return token = TRUE;
+		case 'f':
+			readLiteral("alse");
+			return token = FALSE;
+		case 'n':
+			readLiteral("ull");
+			return token = NULL;
+		case '0':
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+		case '6':
+		case '7':
+		case '8':
+		case '9':
+		case '-':
+		case '+':
+			readNumber((char) c);
+			return token = NUMBER;
+		default:
+			throw syntaxError("Cannot parse element", c);
+		}
+	}
+
+	private void push(int state) {
+		if (++depth == stack.length) {
+			stack = Arrays.copyOf(stack, depth << 1);
+			names = Arrays.copyOf(names, depth << 1);
+		}
+		stack[depth] = state;
+		names[depth] = null;
+	}
+
+	private JToken endContainer(JToken end) {
+		depth--;
+		name = names[depth];
+		return token = end;
+	}
+
+	private String readString(JSymbolTable table) throws IOException {
+		StringBuilder str = null;
+		while (true) {
+			int start = pos;
+			while (pos < limit) {
+				char c = buffer[pos++];
+				if (c == '"') {
+					if (skipping) return null;
+					if (str == null) return table != null ? table.lookup(buffer, start, pos - start - 1) : new String(buffer, start, pos - start - 1);
+					return str.append(buffer, start, pos - start - 1).toString();
+				} else if (c == '\\') {
+					if (!skipping) {
+						str = builder(str).append(buffer, start, pos - start - 1);
+					}
+					readEscape(str);
+					start = pos;
+				}
+			}
+			if (!skipping) {
+				str = builder(str).append(buffer, start, pos - start);
+			}
+			if (!fill(1)) throw syntaxError("Unterminated string", -1);
+		}
+	}
+
+	private StringBuilder builder(StringBuilder str) {
+		if (str == null) {
+			builder.setLength(0);
+			return builder;
+		}
+		return str;
+	}
+
+	private void readEscape(StringBuilder str) throws IOException {
+		if (pos == limit && !fill(1)) throw syntaxError("Unterminated escape sequence", -1);
+		char c = buffer[pos++];
+		if (c == 'u') {
+			if (limit - pos < 4 && !fill(4)) throw syntaxError("Unterminated escape sequence", -1);
+			int value = 0;
+			for (int end = pos + 4; pos < end; pos++) {
+				int digit = Character.digit(buffer[pos], 16);
+				if (digit < 0) throw syntaxError("Invalid unicode escape", buffer[pos]);
+				value = (value << 4) | digit;
+			}
+			c = (char) value;
+		} else if (c == 'b') {
+			c = '\b';
+		} else if (c == 'f') {
+			c = '\f';
+		} else if (c == 'n') {
+			c = '\n';
+		} else if (c == 'r') {
+			c = '\r';
+		} else if (c == 't') {
+			c = '\t';
+		}
+		if (str != null) str.append(c);
+	}
+
+	private void readNumber(char first) throws IOException {
+		char[] chars = numberChars;
+		chars[0] = first;
+		int length = 1;
+		while (pos < limit || fill(1)) {
+			char c = buffer[pos];
+			if ((c < '0' || c > '9') && c != '.' && c != 'e' && c != 'E' && c != '-' && c != '+') {
+				break;
+			}
+			if (length == chars.length) {
+				chars = numberChars = Arrays.copyOf(chars, length << 1);
+			}
+			chars[length++] = c;
+			pos++;
+		}
+		numberLength = length;
+	}
+
+	private void readLiteral(String rest) throws IOException {
+		int length = rest.length();
+		if (limit - pos < length) fill(length);
+		for (int i = 0; i < length; i++) {
+			if (pos == limit || buffer[pos] != rest.charAt(i)) throw syntaxError("Invalid literal", pos == limit ? -1 : buffer[pos]);
+			pos++;
+		}
+	}
+
+	private int nextNonWhitespace() throws IOException {
+		while (pos < limit || fill(1)) {
+			char c = buffer[pos++];
+			if (c > ' ') return c;
+		}
+		return -1;
+	}
+
+	/**
+	 * Ensures at least {@code minimum} unread chars are buffered, compacting
+	 * the buffer first. Returns false when the input ends before that.
+	 */
+	private boolean fill(int minimum) throws IOException {
+		if (pos > 0) {
+			int remaining = limit - pos;
+			System.arraycopy(buffer, pos, buffer, 0, remaining);
+			consumed += pos;
+			limit = remaining;
+			pos = 0;
+		}
+		while (limit < minimum) {
+			int read = in.read(buffer, limit, buffer.length - limit);
+			if (read == -1) return false;
+			limit += read;
+		}
+		return true;
+	}
+
+	private IllegalArgumentException syntaxError(String message, int c) {
+		String found = c == -1 ? "end of input" : "'" + (char) c + "'";
+		return new IllegalArgumentException(message + " but got " + found + " at offset " + (consumed + pos));
+	}
+}
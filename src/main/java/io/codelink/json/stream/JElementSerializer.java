@@ -5,29 +5,74 @@ import io.codelink.json.JBool;
 import io.codelink.json.JByte;
 import io.codelink.json.JClass;
 import io.codelink.json.JDate;
+import io.codelink.json.JDateType;
 import io.codelink.json.JElement;
 import io.codelink.json.JNull;
+import io.codelink.json.JNumType;
 import io.codelink.json.JNumber;
 import io.codelink.json.JObject;
+import io.codelink.json.JRaw;
 import io.codelink.json.JStr;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Iterator;
 import java.util.Map.Entry;
 
+/**
+ * Writes elements as JSON text. Keeps a small scratch buffer for numbers and
+ * dates, so an instance must not be shared between threads.
+ */
 public class JElementSerializer {
 
 	private static final char[] EMPTY_OBJECT_CHARS = { '{', '}' };
 	private static final char[] EMPTY_ARRAY_CHARS = { '[', ']' };
 
+	private final char[] scratch = new char[JNumberFormat.MAX_LENGTH];
+
+	private JShapes shapes;
+
+	private boolean singleLine;
+
+	/**
+	 * Remembers the key sequences of written objects and writes objects of a
+	 * known sequence with pre-encoded keys, for arrays of records that share
+	 * their keys. Output is unchanged.
+	 */
+	public JElementSerializer shapeCache(boolean enabled) {
+		shapes = enabled ? new JShapes() : null;
+		return this;
+	}
+
+	/**
+	 * Keeps the output on one line: JRaw values and cached forms that hold a
+	 * line break, as left by a pretty-printed source, are serialized again
+	 * instead of copied.
+	 */
+	public JElementSerializer singleLine(boolean enabled) {
+		singleLine = enabled;
+		return this;
+	}
+
 	public void serializeJObject(JObject instance, Writer writer) throws IOException {
+		String cached = instance.cachedString();
+		if (cached != null && !(singleLine && hasLineBreak(cached))) {
+			writer.write(cached);
+			return;
+		}
 		if (instance.size() == 0) {
 			writer.write(EMPTY_OBJECT_CHARS);
 			return;
 		}
+		if (shapes != null) {
+			serializeShaped(instance, writer);
+			return;
+		}
 		writer.write('{');
 		boolean hasPrevious = false;
-		for (Entry<String, JElement> entry : instance) {
+		for (Iterator<Entry<String, JElement>> iterator = instance.rawIterator(); iterator.hasNext();) {
+			Entry<String, JElement> entry = iterator.next();
 			if (hasPrevious) {
 				writer.write(',');
 			}
@@ -36,18 +81,59 @@ public class JElementSerializer {
 			serialize(entry.getValue(), writer);
 			hasPrevious = true;
 		}
-		;
 		writer.write('}');
 	}
 
+	/**
+	 * Writes the keys as fragments of the shape while they match it, and
+	 * learns the object's shape if they don't.
+	 */
+	private void serializeShaped(JObject instance, Writer writer) throws IOException {
+		Iterator<Entry<String, JElement>> iterator = instance.rawIterator();
+		Entry<String, JElement> entry = iterator.next();
+		JShapes.Shape shape = shapes.lookup(instance.size(), entry.getKey());
+		boolean matched = shape != null;
+		for (int i = 0;; i++) {
+			String key = entry.getKey();
+			if (matched && shape.matches(i, key)) {
+				writer.write(shape.chars[i]);
+			} else {
+				matched = false;
+				writer.write(i == 0 ? '{' : ',');
+				serializeQuotedString(key, writer);
+				writer.write(':');
+			}
+			serialize(entry.getValue(), writer);
+			if (!iterator.hasNext()) {
+				break;
+			}
+			entry = iterator.next();
+		}
+		writer.write('}');
+		if (!matched) {
+			shapes.learn(instance);
+		}
+	}
+
 	public void serializeJArray(JArray instance, Writer writer) throws IOException {
+		String cached = instance.cachedString();
+		if (cached != null && !(singleLine && hasLineBreak(cached))) {
+			writer.write(cached);
+			return;
+		}
 		if (instance.size() == 0) {
 			writer.write(EMPTY_ARRAY_CHARS);
 			return;
 		}
+		JNumType primitive = instance.primitiveType();
+		if (primitive != null) {
+			serializePrimitives(instance, primitive, writer);
+			return;
+		}
 		writer.write('[');
 		boolean hasPrevious = false;
-		for (JElement entry : instance) {
+		for (Iterator<JElement> iterator = instance.rawIterator(); iterator.hasNext();) {
+			JElement entry = iterator.next();
 			if (hasPrevious) {
 				writer.write(',');
 			}
@@ -57,16 +143,50 @@ public class JElementSerializer {
 		writer.write(']');
 	}
 
+	private void serializePrimitives(JArray instance, JNumType type, Writer writer) throws IOException {
+		writer.write('[');
+		if (type == JNumType.LONG) {
+			for (int i = 0, size = instance.size(); i < size; i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				writer.write(scratch, 0, JNumberFormat.writeLong(instance.longAt(i), scratch, 0));
+			}
+		} else {
+			for (int i = 0, size = instance.size(); i < size; i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				writer.write(scratch, 0, JNumberFormat.writeDouble(instance.doubleAt(i), scratch, 0));
+			}
+		}
+		writer.write(']');
+	}
+
 	public void serializeJNull(JNull instance, Writer writer) throws IOException {
 		writer.write("null");
 	}
 
 	public void serializeJStr(JStr instance, Writer writer) throws IOException {
-		serializeQuotedString(instance.string(), writer);
+		serializeQuotedString(instance.chars(), writer);
 	}
 
+	/**
+	 * Ints and longs are written digit by digit, doubles in their shortest
+	 * round-trip form; other numbers through their toString.
+	 */
 	public void serializeJNumber(JNumber instance, Writer writer) throws IOException {
-		writer.write(instance.string());
+		switch (instance.numberType()) {
+		case INTEGER:
+		case LONG:
+			writer.write(scratch, 0, JNumberFormat.writeLong(instance.toLong(), scratch, 0));
+			break;
+		case DOUBLE:
+			writer.write(scratch, 0, JNumberFormat.writeDouble(instance.toDouble(), scratch, 0));
+			break;
+		default:
+			writer.write(instance.string());
+		}
 	}
 
 	public void serializeJBool(JBool instance, Writer writer) throws IOException {
@@ -77,15 +197,56 @@ public class JElementSerializer {
 		writer.write(new String(instance.byteArray()));
 	}
 
-	private void serializeString(CharSequence seq, Writer writer) throws IOException {
-		char c;
+	/**
+	 * Writes the chars with quote, backslash and control chars escaped,
+	 * copying the spans between them in bulk.
+	 */
+	static void serializeString(CharSequence seq, Writer writer) throws IOException {
 		int len = seq.length();
+		int start = 0;
 		for (int i = 0; i < len; i++) {
-			c = seq.charAt(i);
-			if (c == '"') {
-				writer.write('\\');
+			char c = seq.charAt(i);
+			if (c == '"' || c == '\\' || c < ' ') {
+				writeSpan(seq, start, i, writer);
+				writer.write(escape(c));
+				start = i + 1;
 			}
-			writer.write(c);
+		}
+		writeSpan(seq, start, len, writer);
+	}
+
+	private static void writeSpan(CharSequence seq, int start, int end, Writer writer) throws IOException {
+		if (start == end) {
+			return;
+		}
+		if (seq instanceof String) {
+			writer.write((String) seq, start, end - start);
+		} else if (seq instanceof CharBuffer && ((CharBuffer) seq).hasArray()) {
+			CharBuffer chars = (CharBuffer) seq;
+			writer.write(chars.array(), chars.arrayOffset() + chars.position() + start, end - start);
+		} else {
+			writer.append(seq, start, end);
+		}
+	}
+
+	private static String escape(char c) {
+		switch (c) {
+		case '"':
+			return "\\\"";
+		case '\\':
+			return "\\\\";
+		case '\b':
+			return "\\b";
+		case '\f':
+			return "\\f";
+		case '\n':
+			return "\\n";
+		case '\r':
+			return "\\r";
+		case '\t':
+			return "\\t";
+		default:
+			return String.format("\\u%04x", (int) c);
 		}
 	}
 
@@ -95,19 +256,62 @@ public class JElementSerializer {
 		writer.write('"');
 	}
 
+	/**
+	 * Writes the date as a quoted ISO-8601 string.
+	 */
 	private void serializeDate(JDate instance, Writer writer) throws IOException {
-		try {
-			writer.write(instance.date().toString());
-		} catch (Exception e) {
-			writer.write(instance.dateTime().toString());
+		writer.write(scratch, 0, formatDate(instance, scratch));
+	}
+
+	static int formatDate(JDate instance, char[] buf) {
+		buf[0] = '"';
+		int end;
+		if (instance.dateType() == JDateType.LOCALDATE) {
+			end = JNumberFormat.writeDate(instance.date(), buf, 1);
+		} else {
+			end = JNumberFormat.writeDateTime(instance.dateTime(), buf, 1);
 		}
+		buf[end] = '"';
+		return end + 1;
 	}
 
 	private void serializeClass(JClass instance, Writer writer) throws IOException {
 		writer.write(instance.classType().toString());
 	}
 
+	/**
+	 * Writes a value left undecoded by a lazy parse straight from its source
+	 * characters, unless it has been decoded since.
+	 */
+	public void serializeJRaw(JRaw instance, Writer writer) throws IOException {
+		JElement resolved = instance.resolved();
+		if (resolved != null) {
+			serialize(resolved, writer);
+		} else if (singleLine && hasLineBreak(instance.source(), instance.offset(), instance.length())) {
+			serialize(instance.resolve(), writer);
+		} else {
+			writer.write(instance.source(), instance.offset(), instance.length());
+		}
+	}
+
+	private static boolean hasLineBreak(String chars) {
+		return chars.indexOf('\n') >= 0 || chars.indexOf('\r') >= 0;
+	}
+
+	private static boolean hasLineBreak(char[] chars, int offset, int length) {
+		for (int i = offset, end = offset + length; i < end; i++) {
+			if (chars[i] == '\n' || chars[i] == '\r') {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public void serialize(JElement instance, Writer writer) throws IOException {
+		if (instance instanceof JRaw) {
+			serializeJRaw((JRaw) instance, writer);
+			return;
+		}
 		switch (instance.type()) {
 		case ARRAY:
 			serializeJArray((JArray) instance, writer);
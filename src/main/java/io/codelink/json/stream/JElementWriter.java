@@ -0,0 +1,263 @@
+package io.codelink.json.stream;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import io.codelink.json.JElement;
+import io.codelink.json.Json;
+
+/**
+ * Writes JSON token by token, the counterpart of JElementReader, so large
+ * documents can be emitted without building a JObject tree first. Calls that
+ * would produce malformed JSON throw IllegalStateException. Dates are
+ * written as quoted ISO-8601 strings.
+ */
+public class JElementWriter implements Closeable, Flushable {
+
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_OBJECT = 2;
+	private static final int DANGLING_NAME = 3;
+	private static final int NONEMPTY_OBJECT = 4;
+	private static final int EMPTY_ARRAY = 5;
+	private static final int NONEMPTY_ARRAY = 6;
+
+	private final Writer out;
+	private final JElementSerializer serializer = new JElementSerializer();
+	private final char[] scratch = new char[JNumberFormat.MAX_LENGTH];
+
+	private int[] stack = new int[32];
+	private int depth;
+
+	public JElementWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes UTF-8 through a buffer of {@link JElementReader#DEFAULT_BUFFER_SIZE}
+	 * chars.
+	 */
+	public JElementWriter(OutputStream out) {
+		this(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), JElementReader.DEFAULT_BUFFER_SIZE));
+	}
+
+	public JElementWriter beginObject() throws IOException {
+		beforeValue();
+		push(EMPTY_OBJECT);
+		out.write('{');
+		return this;
+	}
+
+	public JElementWriter endObject() throws IOException {
+		int state = stack[depth];
+		if (state != EMPTY_OBJECT && state != NONEMPTY_OBJECT) {
+			throw new IllegalStateException(state == DANGLING_NAME ? "Property name without value!" : "Not inside a JObject!");
+		}
+		depth--;
+		out.write('}');
+		return this;
+	}
+
+	public JElementWriter beginArray() throws IOException {
+		beforeValue();
+		push(EMPTY_ARRAY);
+		out.write('[');
+		return this;
+	}
+
+	public JElementWriter endArray() throws IOException {
+		int state = stack[depth];
+		if (state != EMPTY_ARRAY && state != NONEMPTY_ARRAY) {
+			throw new IllegalStateException("Not inside a Json Array!");
+		}
+		depth--;
+		out.write(']');
+		return this;
+	}
+
+	public JElementWriter name(String name) throws IOException {
+		if (name == null) {
+			throw new IllegalArgumentException("Property name cannot be null!");
+		}
+		int state = stack[depth];
+		if (state == NONEMPTY_OBJECT) {
+			out.write(',');
+		} else if (state != EMPTY_OBJECT) {
+			throw new IllegalStateException(state == DANGLING_NAME ? "Property name without value!" : "Not inside a JObject!");
+		}
+		stack[depth] = DANGLING_NAME;
+		writeQuoted(name);
+		out.write(':');
+		return this;
+	}
+
+	public JElementWriter value(String value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		beforeValue();
+		writeQuoted(value);
+		return this;
+	}
+
+	public JElementWriter value(long value) throws IOException {
+		beforeValue();
+		out.write(scratch, 0, JNumberFormat.writeLong(value, scratch, 0));
+		return this;
+	}
+
+	public JElementWriter value(double value) throws IOException {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			throw new IllegalArgumentException("JSON numbers cannot be " + value);
+		}
+		beforeValue();
+		out.write(scratch, 0, JNumberFormat.writeDouble(value, scratch, 0));
+		return this;
+	}
+
+	public JElementWriter value(boolean value) throws IOException {
+		beforeValue();
+		out.write(value ? "true" : "false");
+		return this;
+	}
+
+	public JElementWriter value(BigDecimal value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		beforeValue();
+		out.write(value.toString());
+		return this;
+	}
+
+	public JElementWriter value(BigInteger value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		beforeValue();
+		out.write(value.toString());
+		return this;
+	}
+
+	public JElementWriter value(LocalDate value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		beforeValue();
+		scratch[0] = '"';
+		writeDate(JNumberFormat.writeDate(value, scratch, 1));
+		return this;
+	}
+
+	public JElementWriter value(LocalDateTime value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		beforeValue();
+		scratch[0] = '"';
+		writeDate(JNumberFormat.writeDateTime(value, scratch, 1));
+		return this;
+	}
+
+	private void writeDate(int end) throws IOException {
+		scratch[end] = '"';
+		out.write(scratch, 0, end + 1);
+	}
+
+	public JElementWriter nullValue() throws IOException {
+		beforeValue();
+		out.write("null");
+		return this;
+	}
+
+	/**
+	 * Embeds an existing element, serialized as JElementSerializer does.
+	 */
+	public JElementWriter writeElement(JElement element) throws IOException {
+		if (element == null) {
+			return nullValue();
+		}
+		beforeValue();
+		serializer.serialize(element, out);
+		return this;
+	}
+
+	/**
+	 * Writes an array with the remaining items, pulling and converting one at
+	 * a time with Json.build, so only the current item is held in memory.
+	 */
+	public JElementWriter writeArray(Iterator<?> items) throws IOException {
+		beginArray();
+		while (items.hasNext()) {
+			writeElement(Json.build(items.next()));
+		}
+		return endArray();
+	}
+
+	public JElementWriter writeArray(Stream<?> items) throws IOException {
+		return writeArray(items.iterator());
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Closes the underlying writer; the document must be complete.
+	 */
+	@Override
+	public void close() throws IOException {
+		out.close();
+		if (depth > 0 || stack[0] != NONEMPTY_DOCUMENT) {
+			throw new IllegalStateException("Incomplete document!");
+		}
+	}
+
+	private void beforeValue() throws IOException {
+		switch (stack[depth]) {
+		case EMPTY_DOCUMENT:
+			stack[depth] = NONEMPTY_DOCUMENT;
+			break;
+		case NONEMPTY_DOCUMENT:
+			throw new IllegalStateException("Document already has a top level value!");
+		case EMPTY_ARRAY:
+			stack[depth] = NONEMPTY_ARRAY;
+			break;
+		case NONEMPTY_ARRAY:
+			out.write(',');
+			break;
+		case DANGLING_NAME:
+			stack[depth] = NONEMPTY_OBJECT;
+			break;
+		default:
+			throw new IllegalStateException("Expecting a property name!");
+		}
+	}
+
+	private void push(int state) {
+		if (++depth == stack.length) {
+			stack = Arrays.copyOf(stack, depth << 1);
+		}
+		stack[depth] = state;
+	}
+
+	private void writeQuoted(String value) throws IOException {
+		out.write('"');
+		JElementSerializer.serializeString(value, out);
+		out.write('"');
+	}
+}
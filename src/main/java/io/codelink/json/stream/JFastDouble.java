@@ -0,0 +1,185 @@
+package io.codelink.json.stream;
+
+import java.math.BigInteger;
+
+/**
+ * Correctly rounded decimal to double conversion after Eisel and Lemire: up
+ * to 19 significant digits are multiplied by a 128 bit approximation of the
+ * power of five and rounded directly, with Clinger's exact path for small
+ * exponents. Longer inputs go through Double.parseDouble.
+ */
+final class JFastDouble {
+
+	private static final int SMALLEST_POWER = -342;
+	private static final int LARGEST_POWER = 308;
+	private static final int MINIMUM_EXPONENT = -1023;
+	private static final int MANTISSA_BITS = 52;
+	private static final int MAX_DIGITS = 19;
+
+	private static final double[] EXACT_POWERS = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/**
+	 * Pairs of high and low words of 5^q normalized to 128 bits, for q from
+	 * SMALLEST_POWER to LARGEST_POWER.
+	 */
+	private static final long[] POWERS = powersOfFive();
+
+	private JFastDouble() {}
+
+	/**
+	 * Parses a number already validated against the JSON grammar.
+	 */
+	static double parse(char[] chars, int offset, int length) {
+		int end = offset + length;
+		int i = offset;
+		boolean negative = chars[i] == '-';
+		if (negative) i++;
+
+		long mantissa = 0;
+		int significant = 0;
+		int exponent = 0;
+		for (; i < end && chars[i] >= '0' && chars[i] <= '9'; i++) {
+			int digit = chars[i] - '0';
+			if (mantissa == 0 && digit == 0) continue;
+			if (++significant > MAX_DIGITS) return fallback(chars, offset, length);
+			mantissa = mantissa * 10 + digit;
+		}
+		if (i < end && chars[i] == '.') {
+			for (i++; i < end && chars[i] >= '0' && chars[i] <= '9'; i++) {
+				int digit = chars[i] - '0';
+				exponent--;
+				if (mantissa == 0 && digit == 0) continue;
+				if (++significant > MAX_DIGITS) return fallback(chars, offset, length);
+				mantissa = mantissa * 10 + digit;
+			}
+		}
+		if (i < end) {
+			boolean negativeExponent = chars[++i] == '-';
+			if (negativeExponent || chars[i] == '+') i++;
+			int explicit = 0;
+			for (; i < end; i++) {
+				if (explicit < 100000) explicit = explicit * 10 + chars[i] - '0';
+			}
+			exponent += negativeExponent ? -explicit : explicit;
+		}
+
+		if (mantissa == 0) {
+			return negative ? -0.0 : 0.0;
+		}
+		// 19 digits can pass Long.MAX_VALUE: the mantissa is unsigned from here
+		if (exponent >= -22 && exponent <= 22 && mantissa >= 0 && mantissa <= 1L << 53) {
+			double value = mantissa;
+			value = exponent < 0 ? value / EXACT_POWERS[-exponent] : value * EXACT_POWERS[exponent];
+			return negative ? -value : value;
+		}
+		return eiselLemire(mantissa, exponent, negative);
+	}
+
+	private static double eiselLemire(long w, int q, boolean negative) {
+		if (q < SMALLEST_POWER) {
+			return negative ? -0.0 : 0.0;
+		}
+		if (q > LARGEST_POWER) {
+			return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		}
+		int leadingZeros = Long.numberOfLeadingZeros(w);
+		w <<= leadingZeros;
+
+		int index = 2 * (q - SMALLEST_POWER);
+		long high = unsignedMultiplyHigh(w, POWERS[index]);
+		long low = w * POWERS[index];
+		long precisionMask = -1L >>> (MANTISSA_BITS + 3);
+		if ((high & precisionMask) == precisionMask) {
+			long secondHigh = unsignedMultiplyHigh(w, POWERS[index + 1]);
+			low += secondHigh;
+			if (Long.compareUnsigned(secondHigh, low) > 0) high++;
+		}
+
+		int upperBit = (int) (high >>> 63);
+		int shift = upperBit + 64 - MANTISSA_BITS - 3;
+		long mantissa = high >>> shift;
+		int power2 = power(q) + upperBit - leadingZeros - MINIMUM_EXPONENT;
+
+		if (power2 <= 0) {
+			// subnormal
+			if (-power2 + 1 >= 64) {
+				return negative ? -0.0 : 0.0;
+			}
+			mantissa >>>= -power2 + 1;
+			mantissa += mantissa & 1;
+			mantissa >>>= 1;
+			power2 = mantissa < 1L << MANTISSA_BITS ? 0 : 1;
+			return toDouble(mantissa, power2, negative);
+		}
+
+		// exactly half way between two doubles: round to even
+		if (Long.compareUnsigned(low, 1) <= 0 && q >= -4 && q <= 23 && (mantissa & 3) == 1 && mantissa << shift == high) {
+			mantissa &= ~1L;
+		}
+		mantissa += mantissa & 1;
+		mantissa >>>= 1;
+		if (mantissa >= 2L << MANTISSA_BITS) {
+			mantissa = 1L << MANTISSA_BITS;
+			power2++;
+		}
+		mantissa &= ~(1L << MANTISSA_BITS);
+		if (power2 >= 0x7FF) {
+			return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		}
+		return toDouble(mantissa, power2, negative);
+	}
+
+	private static double toDouble(long mantissa, int power2, boolean negative) {
+		long bits = mantissa | (long) power2 << MANTISSA_BITS;
+		return Double.longBitsToDouble(negative ? bits | Long.MIN_VALUE : bits);
+	}
+
+	/**
+	 * floor(log2(10^q)) + 63.
+	 */
+	private static int power(int q) {
+		return (((152170 + 65536) * q) >> 16) + 63;
+	}
+
+	static long unsignedMultiplyHigh(long x, long y) {
+		long x0 = x & 0xFFFFFFFFL;
+		long x1 = x >>> 32;
+		long y0 = y & 0xFFFFFFFFL;
+		long y1 = y >>> 32;
+		long p01 = x0 * y1;
+		long middle = x1 * y0 + ((x0 * y0) >>> 32) + (p01 & 0xFFFFFFFFL);
+		return x1 * y1 + (middle >>> 32) + (p01 >>> 32);
+	}
+
+	private static double fallback(char[] chars, int offset, int length) {
+		return Double.parseDouble(new String(chars, offset, length));
+	}
+
+	private static long[] powersOfFive() {
+		long[] powers = new long[2 * (LARGEST_POWER - SMALLEST_POWER + 1)];
+		BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+		BigInteger two127 = BigInteger.ONE.shiftLeft(127);
+		BigInteger five = BigInteger.valueOf(5);
+		for (int q = SMALLEST_POWER; q <= LARGEST_POWER; q++) {
+			BigInteger c;
+			if (q < 0) {
+				BigInteger power5 = five.pow(-q);
+				int z = power5.bitLength();
+				int b = q >= -27 ? z + 127 : 2 * z + 128;
+				c = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+			} else {
+				c = five.pow(q);
+				while (c.compareTo(two127) < 0) {
+					c = c.shiftLeft(1);
+				}
+			}
+			while (c.compareTo(two128) >= 0) {
+				c = c.shiftRight(1);
+			}
+			int index = 2 * (q - SMALLEST_POWER);
+			powers[index] = c.shiftRight(64).longValue();
+			powers[index + 1] = c.longValue();
+		}
+		return powers;
+	}
+}
@@ -0,0 +1,257 @@
+package io.codelink.json.stream;
+
+import java.util.Arrays;
+
+import io.codelink.json.JArray;
+import io.codelink.json.JElement;
+import io.codelink.json.JObject;
+
+/**
+ * Two stage parser for large documents. The first stage classifies the input
+ * in blocks of 64 chars with branch-free SWAR arithmetic (four UTF-16 chars
+ * per long) and records the position of every structural char outside
+ * strings, every opening quote and every scalar start. The second stage
+ * builds the tree by walking that index, decoding values with the
+ * JElementParser routines so both produce identical trees.
+ */
+public class JIndexedParser extends JElementParser {
+
+	private static final long ONES = 0x0001000100010001L;
+	private static final long LOW15 = 0x7FFF7FFF7FFF7FFFL;
+	private static final long HIGH = 0x8000800080008000L;
+	private static final long EVEN_BITS = 0x5555555555555555L;
+
+	private static final long QUOTE = '"' * ONES;
+	private static final long BACKSLASH = '\\' * ONES;
+	private static final long OPEN_BRACE = '{' * ONES;
+	private static final long CLOSE_BRACE = '}' * ONES;
+	private static final long COLON = ':' * ONES;
+	private static final long COMMA = ',' * ONES;
+	private static final long CASE_BIT = 0x20 * ONES;
+	private static final long WHITESPACE_LIMIT = 0x21 * ONES;
+
+	private int[] structurals = new int[64];
+	private int count;
+	private int cursor;
+
+	private long prevEscaped;
+	private long prevInString;
+	private long prevScalar;
+
+	@Override
+	public JElement parse(String json) {
+		return parse(json.toCharArray());
+	}
+
+	@Override
+	public JElement parse(char[] chars) {
+		charArray = chars;
+		index(chars);
+		cursor = 0;
+		arraySizes.reset();
+		return decodeIndexedValue();
+	}
+
+	private void index(char[] chars) {
+		int length = chars.length;
+		if (structurals.length < (length >> 2) + 64) {
+			structurals = new int[(length >> 2) + 64];
+		}
+		count = 0;
+		prevEscaped = 0;
+		prevInString = 0;
+		prevScalar = 0;
+
+		long[] words = new long[16];
+		for (int base = 0; base < length; base += 64) {
+			if (base + 64 <= length) {
+				for (int k = 0, i = base; k < 16; k++, i += 4) {
+					words[k] = chars[i] | (long) chars[i + 1] << 16 | (long) chars[i + 2] << 32 | (long) chars[i + 3] << 48;
+				}
+			} else {
+				// pad the last block with spaces
+				for (int k = 0, i = base; k < 16; k++, i += 4) {
+					words[k] = charOrSpace(chars, i) | (long) charOrSpace(chars, i + 1) << 16 | (long) charOrSpace(chars, i + 2) << 32 | (long) charOrSpace(chars, i + 3) << 48;
+				}
+			}
+			indexBlock(words, base);
+		}
+		if (prevInString != 0) {
+			throw new IllegalArgumentException("Did not find end of string");
+		}
+	}
+
+	private static char charOrSpace(char[] chars, int index) {
+		return index < chars.length ? chars[index] : ' ';
+	}
+
+	private void indexBlock(long[] words, int base) {
+		long quote = 0;
+		long backslash = 0;
+		long op = 0;
+		long whitespace = 0;
+		for (int k = 0; k < 16; k++) {
+			long w = words[k];
+			long folded = w | CASE_BIT; // '[' and ']' fold onto '{' and '}'
+			int shift = k << 2;
+			quote |= (long) nibble(equal(w, QUOTE)) << shift;
+			backslash |= (long) nibble(equal(w, BACKSLASH)) << shift;
+			op |= (long) nibble(equal(folded, OPEN_BRACE) | equal(folded, CLOSE_BRACE) | equal(w, COLON) | equal(w, COMMA)) << shift;
+			whitespace |= (long) nibble(below(w, WHITESPACE_LIMIT)) << shift;
+		}
+
+		long quotes = quote & ~findEscaped(backslash);
+		long inString = prefixXor(quotes) ^ prevInString;
+		prevInString = inString >> 63;
+
+		long scalar = ~(op | whitespace | quote) & ~inString;
+		long scalarStarts = scalar & ~(scalar << 1 | prevScalar);
+		prevScalar = scalar >>> 63;
+
+		long bits = (op & ~inString) | (quotes & inString) | scalarStarts;
+		int needed = count + Long.bitCount(bits);
+		if (needed > structurals.length) {
+			structurals = Arrays.copyOf(structurals, Math.max(needed, structurals.length << 1));
+		}
+		while (bits != 0) {
+			structurals[count++] = base + Long.numberOfTrailingZeros(bits);
+			bits &= bits - 1;
+		}
+	}
+
+	/**
+	 * Marks the chars escaped by an odd run of backslashes, carrying a
+	 * pending escape into the next block.
+	 */
+	private long findEscaped(long backslash) {
+		backslash &= ~prevEscaped;
+		long followsEscape = backslash << 1 | prevEscaped;
+		long oddSequenceStarts = backslash & ~EVEN_BITS & ~followsEscape;
+		long sequencesStartingOnEvenBits = oddSequenceStarts + backslash;
+		prevEscaped = Long.compareUnsigned(sequencesStartingOnEvenBits, oddSequenceStarts) < 0 ? 1 : 0;
+		long invertMask = sequencesStartingOnEvenBits << 1;
+		return (EVEN_BITS ^ invertMask) & followsEscape;
+	}
+
+	private static long prefixXor(long bits) {
+		bits ^= bits << 1;
+		bits ^= bits << 2;
+		bits ^= bits << 4;
+		bits ^= bits << 8;
+		bits ^= bits << 16;
+		bits ^= bits << 32;
+		return bits;
+	}
+
+	/**
+	 * Sets the high bit of each 16 bit lane equal to the pattern lane.
+	 */
+	private static long equal(long word, long pattern) {
+		long x = word ^ pattern;
+		return ~(((x & LOW15) + LOW15) | x | LOW15);
+	}
+
+	/**
+	 * Sets the high bit of each 16 bit lane below the pattern lane.
+	 */
+	private static long below(long word, long pattern) {
+		return ~((word | HIGH) - pattern) & ~word & HIGH;
+	}
+
+	/**
+	 * Gathers the four lane high bits into the low four bits.
+	 */
+	private static int nibble(long highs) {
+		return (int) (((highs >>> 15) * 0x0000200040008001L) >>> 45) & 0xF;
+	}
+
+	private int nextStructural() {
+		if (cursor >= count) {
+			throw new IllegalArgumentException("Unexpected end of input");
+		}
+		return structurals[cursor++];
+	}
+
+	private JElement decodeIndexedValue() {
+		int position = nextStructural();
+		char c = charArray[position];
+		switch (c) {
+		case '{':
+			return decodeIndexedJObject();
+		case '[':
+			return decodeIndexedJsonArray();
+		default:
+			__index = position;
+			__currentChar = c;
+			switch (c) {
+			case '"':
+				return decodeJStr();
+			case 't':
+				return decodeTrue();
+			case 'f':
+				return decodeFalse();
+			case 'n':
+				return decodeNull();
+			case '0':
+			case '1':
+			case '2':
+			case '3':
+			case '4':
+			case '5':
+			case '6':
+			case '7':
+			case '8':
+			case '9':
+			case '-':
+			case '+':
+				return decodeNumber();
+			default:
+				throw new IllegalArgumentException("Cannot parse element!");
+			}
+		}
+	}
+
+	private JObject decodeIndexedJObject() {
+		JObject object = new JObject();
+		if (cursor < count && charArray[structurals[cursor]] == '}') {
+			cursor++;
+			return object;
+		}
+		while (true) {
+			int position = nextStructural();
+			if (charArray[position] != '"') {
+				throw new IllegalArgumentException("expecting '\"' but got current char " + charArray[position]);
+			}
+			__index = position;
+			String key = decodeKey();
+			position = nextStructural();
+			if (charArray[position] != ':') {
+				throw new IllegalArgumentException("expecting ':' but got current char " + charArray[position]);
+			}
+			object.set(key, decodeIndexedValue());
+			char c = charArray[nextStructural()];
+			if (c == '}') {
+				return object;
+			} else if (c != ',') {
+				throw new IllegalArgumentException("expecting '}' or ',' but got current char " + c);
+			}
+		}
+	}
+
+	private JArray decodeIndexedJsonArray() {
+		if (cursor < count && charArray[structurals[cursor]] == ']') {
+			cursor++;
+			return JArray.EMPTY;
+		}
+		JArray list = arraySizes.open();
+		while (true) {
+			list.add(decodeIndexedValue());
+			char c = charArray[nextStructural()];
+			if (c == ']') {
+				return arraySizes.close(list);
+			} else if (c != ',') {
+				throw new IllegalArgumentException(String.format("expecting a ',' or a ']', but got \nthe current character of %s on array index of %s \n", c, list.size()));
+			}
+		}
+	}
+}
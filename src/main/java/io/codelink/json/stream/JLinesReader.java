@@ -0,0 +1,170 @@
+package io.codelink.json.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import io.codelink.json.JArray;
+import io.codelink.json.JElement;
+
+/**
+ * Reads newline delimited JSON (JSON Lines) from a memory mapped file. The
+ * file is mapped in segments, each segment is cut into batches of whole lines
+ * and the batches are parsed in parallel on a ForkJoinPool. Blank lines are
+ * skipped.
+ */
+public class JLinesReader implements Closeable {
+
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	public static final int DEFAULT_BATCH_SIZE = 1024 * 1024;
+
+	private final FileChannel channel;
+	private final ForkJoinPool pool;
+	private final int segmentSize;
+	private final int batchSize;
+
+	public JLinesReader(Path path) throws IOException {
+		this(path, ForkJoinPool.commonPool());
+	}
+
+	public JLinesReader(Path path, ForkJoinPool pool) throws IOException {
+		this(path, pool, DEFAULT_SEGMENT_SIZE, DEFAULT_BATCH_SIZE);
+	}
+
+	public JLinesReader(Path path, ForkJoinPool pool, int segmentSize, int batchSize) throws IOException {
+		if (segmentSize <= 0 || batchSize <= 0) {
+			throw new IllegalArgumentException("Segment and batch sizes must be positive!");
+		}
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		this.pool = pool;
+		this.segmentSize = segmentSize;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Parses every record and hands it to the action. When {@code ordered} is
+	 * true the action runs on the calling thread in file order; otherwise it
+	 * runs concurrently on the pool threads as records are parsed and must be
+	 * thread-safe.
+	 */
+	public void forEach(Consumer<? super JElement> action, boolean ordered) throws IOException {
+		Deque<ForkJoinTask<List<JElement>>> window = new ArrayDeque<>();
+		int maxPending = Math.max(2, pool.getParallelism() * 2);
+		long size = channel.size();
+		long start = 0;
+		while (start < size) {
+			long mapped = Math.min(segmentSize, size - start);
+			MappedByteBuffer segment = channel.map(MapMode.READ_ONLY, start, mapped);
+			int end = lastNewline(segment, (int) mapped);
+			while (end < 0 && start + mapped < size) {
+				// a single record is longer than the segment, widen the mapping
+				if (mapped >= Integer.MAX_VALUE) {
+					throw new IOException("Record at offset " + start + " exceeds " + Integer.MAX_VALUE + " bytes");
+				}
+				mapped = Math.min(Math.min(mapped << 1, Integer.MAX_VALUE), size - start);
+				segment = channel.map(MapMode.READ_ONLY, start, mapped);
+				end = lastNewline(segment, (int) mapped);
+			}
+			if (end < 0 || start + mapped == size) {
+				end = (int) mapped;
+			} else {
+				end++;
+			}
+
+			for (int from = 0; from < end;) {
+				int to = batchEnd(segment, from, end);
+				final MappedByteBuffer bytes = segment;
+				final int batchFrom = from;
+				final int batchTo = to;
+				window.add(pool.submit(() -> parseBatch(bytes, batchFrom, batchTo, ordered ? null : action)));
+				if (window.size() >= maxPending) {
+					deliver(window.poll(), action);
+				}
+				from = to;
+			}
+			start += end;
+		}
+		while (!window.isEmpty()) {
+			deliver(window.poll(), action);
+		}
+	}
+
+	public void forEach(Consumer<? super JElement> action) throws IOException {
+		forEach(action, true);
+	}
+
+	/**
+	 * Reads all records, in file order, into one JArray.
+	 */
+	public JArray readAll() throws IOException {
+		JArray records = new JArray();
+		forEach(records::add, true);
+		return records;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private static void deliver(ForkJoinTask<List<JElement>> task, Consumer<? super JElement> action) {
+		List<JElement> records = task.join();
+		if (records != null) {
+			records.forEach(action);
+		}
+	}
+
+	private int batchEnd(MappedByteBuffer segment, int from, int end) {
+		if (end - from <= batchSize) return end;
+		for (int i = from + batchSize; i < end; i++) {
+			if (segment.get(i) == '\n') return i + 1;
+		}
+		return end;
+	}
+
+	private static int lastNewline(MappedByteBuffer segment, int length) {
+		for (int i = length - 1; i >= 0; i--) {
+			if (segment.get(i) == '\n') return i;
+		}
+		return -1;
+	}
+
+	private static List<JElement> parseBatch(MappedByteBuffer bytes, int from, int to, Consumer<? super JElement> action) {
+		JElementByteParser parser = new JElementByteParser();
+		List<JElement> records = action == null ? new ArrayList<>() : null;
+		int lineStart = from;
+		for (int i = from; i <= to; i++) {
+			if (i == to || bytes.get(i) == '\n') {
+				if (!blank(bytes, lineStart, i)) {
+					JElement record = parser.parse(bytes, lineStart, i - lineStart);
+					if (records != null) {
+						records.add(record);
+					} else {
+						action.accept(record);
+					}
+				}
+				lineStart = i + 1;
+			}
+		}
+		return records;
+	}
+
+	private static boolean blank(MappedByteBuffer bytes, int from, int to) {
+		for (int i = from; i < to; i++) {
+			byte b = bytes.get(i);
+			if (b < 0 || b > ' ') return false;
+		}
+		return true;
+	}
+}
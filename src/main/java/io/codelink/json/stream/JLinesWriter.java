@@ -0,0 +1,63 @@
+package io.codelink.json.stream;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import io.codelink.json.JElement;
+
+/**
+ * Writes newline delimited JSON (JSON Lines), one record per line, through
+ * a single line JElementSerializer and a large buffer in front of the
+ * channel.
+ */
+public class JLinesWriter implements Closeable, Flushable {
+
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+	private final JElementSerializer serializer = new JElementSerializer().singleLine(true);
+	private final Writer writer;
+
+	public JLinesWriter(Path path) throws IOException {
+		this(path, false);
+	}
+
+	public JLinesWriter(Path path, boolean append) throws IOException {
+		this(append ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND) : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), DEFAULT_BUFFER_SIZE);
+	}
+
+	public JLinesWriter(WritableByteChannel channel, int bufferSize) {
+		this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), bufferSize), bufferSize);
+	}
+
+	public JLinesWriter write(JElement record) throws IOException {
+		serializer.serialize(record, writer);
+		writer.write('\n');
+		return this;
+	}
+
+	public JLinesWriter writeAll(Iterable<? extends JElement> records) throws IOException {
+		for (JElement record : records) {
+			write(record);
+		}
+		return this;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
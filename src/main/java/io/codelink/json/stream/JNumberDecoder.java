@@ -0,0 +1,80 @@
+package io.codelink.json.stream;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import io.codelink.json.JNumber;
+
+/**
+ * Turns the characters of a JSON number into a JNumber. Integers are
+ * accumulated straight from the chars, falling back to BigInteger beyond long
+ * range; decimals are decoded according to the {@link JDecimalMode}.
+ */
+final class JNumberDecoder {
+
+	private static final long OVERFLOW_LIMIT = Long.MIN_VALUE / 10;
+
+	private JNumberDecoder() {}
+
+	static JNumber decode(char[] chars, int offset, int length) {
+		return decode(chars, offset, length, JDecimalMode.BIG_DECIMAL);
+	}
+
+	static JNumber decode(char[] chars, int offset, int length, JDecimalMode mode) {
+		if (length > 0 && chars[offset] == '+') {
+			offset++;
+			length--;
+		}
+		int end = offset + length;
+		boolean negative = length > 0 && chars[offset] == '-';
+		int i = negative ? offset + 1 : offset;
+		int digits = i;
+		long value = 0;
+		boolean overflow = false;
+		for (; i < end; i++) {
+			int digit = chars[i] - '0';
+			if (digit < 0 || digit > 9) break;
+			if (overflow) continue;
+			if (value < OVERFLOW_LIMIT || (value == OVERFLOW_LIMIT && digit > (negative ? 8 : 7))) {
+				overflow = true;
+			} else {
+				// accumulate negatively so Long.MIN_VALUE is representable
+				value = value * 10 - digit;
+			}
+		}
+		if (i == digits) throw new NumberFormatException("Number without digits!");
+
+		if (i == end) {
+			if (overflow) {
+				return new JNumber(new BigInteger(new String(chars, offset, length)));
+			}
+			if (!negative) value = -value;
+			if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+				return JNumber.valueOf((int) value);
+			}
+			return new JNumber(value);
+		}
+
+		if (chars[i] == '.') {
+			digits = ++i;
+			while (i < end && chars[i] >= '0' && chars[i] <= '9') i++;
+			if (i == digits) throw new NumberFormatException("Decimal separator without digits!");
+		}
+		if (i < end && (chars[i] == 'e' || chars[i] == 'E')) {
+			if (++i < end && (chars[i] == '+' || chars[i] == '-')) i++;
+			digits = i;
+			while (i < end && chars[i] >= '0' && chars[i] <= '9') i++;
+			if (i == digits) throw new NumberFormatException("Exponent without digits!");
+		}
+		if (i != end) throw new NumberFormatException("Found invalid digit char!");
+
+		switch (mode) {
+		case DOUBLE:
+			return new JNumber(JFastDouble.parse(chars, offset, length));
+		case LAZY:
+			return JNumber.lazyDecimal(new String(chars, offset, length));
+		default:
+			return new JNumber(new BigDecimal(chars, offset, length));
+		}
+	}
+}
@@ -0,0 +1,350 @@
+package io.codelink.json.stream;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Formats numbers and dates into a char array without intermediate Strings.
+ * Doubles get the shortest decimal that reads back as the same value, after
+ * Giulietti's Schubfach, laid out as Double.toString does. Dates are laid out
+ * as LocalDate and LocalDateTime toString, which is ISO-8601. Public only for
+ * {@link #decimal(double)}, which the model uses.
+ */
+public final class JNumberFormat {
+
+	/**
+	 * Room needed by any single call.
+	 */
+	static final int MAX_LENGTH = 40;
+
+	private static final int P = 53;
+	private static final int Q_MIN = -1074;
+	private static final long C_MIN = 1L << P - 1;
+	private static final long T_MASK = C_MIN - 1;
+	private static final long C_TINY = 3;
+	private static final int K_MIN = -324;
+	private static final int K_MAX = 292;
+
+	private static final char[] TENS = new char[100];
+	private static final char[] ONES = new char[100];
+
+	/**
+	 * Pairs of the high and low 63 bits of floor(10^-k / 2^r) + 1, scaled into
+	 * [2^125, 2^126), for k from K_MIN to K_MAX.
+	 */
+	private static final long[] G = powersOfTen();
+
+	static {
+		for (int i = 0; i < 100; i++) {
+			TENS[i] = (char) ('0' + i / 10);
+			ONES[i] = (char) ('0' + i % 10);
+		}
+	}
+
+	private JNumberFormat() {}
+
+	static int writeInt(int value, char[] buf, int pos) {
+		if (value < 0) {
+			if (value == Integer.MIN_VALUE) {
+				return writeString(Integer.toString(value), buf, pos);
+			}
+			buf[pos++] = '-';
+			value = -value;
+		}
+		int end = pos + digits(value);
+		int i = end;
+		while (value >= 100) {
+			int q = value / 100;
+			int r = value - q * 100;
+			buf[--i] = ONES[r];
+			buf[--i] = TENS[r];
+			value = q;
+		}
+		if (value >= 10) {
+			buf[--i] = ONES[value];
+			buf[--i] = TENS[value];
+		} else {
+			buf[--i] = (char) ('0' + value);
+		}
+		return end;
+	}
+
+	static int writeLong(long value, char[] buf, int pos) {
+		if (value == (int) value) {
+			return writeInt((int) value, buf, pos);
+		}
+		if (value < 0) {
+			if (value == Long.MIN_VALUE) {
+				return writeString(Long.toString(value), buf, pos);
+			}
+			buf[pos++] = '-';
+			value = -value;
+		}
+		int end = pos + digits(value);
+		int i = end;
+		while (value > Integer.MAX_VALUE) {
+			long q = value / 100;
+			int r = (int) (value - q * 100);
+			buf[--i] = ONES[r];
+			buf[--i] = TENS[r];
+			value = q;
+		}
+		writeInt((int) value, buf, pos);
+		return end;
+	}
+
+	/**
+	 * Writes what Double.toString writes on current JDKs: the shortest
+	 * decimal that rounds to the value, the closest one on ties.
+	 */
+	static int writeDouble(double value, char[] buf, int pos) {
+		long bits = Double.doubleToRawLongBits(value);
+		long t = bits & T_MASK;
+		int bq = (int) (bits >>> P - 1) & 0x7FF;
+		if (bq == 0x7FF) {
+			return writeString(Double.toString(value), buf, pos);
+		}
+		if (bits < 0) {
+			buf[pos++] = '-';
+		}
+		if (bq != 0) {
+			int mq = -Q_MIN + 1 - bq;
+			long c = C_MIN | t;
+			if (0 < mq && mq < P) {
+				long f = c >> mq;
+				if (f << mq == c) {
+					return layout(f, 0, buf, pos);
+				}
+			}
+			return shortest(-mq, c, 0, buf, pos);
+		}
+		if (t != 0) {
+			return t < C_TINY ? shortest(Q_MIN, 10 * t, -1, buf, pos) : shortest(Q_MIN, t, 0, buf, pos);
+		}
+		buf[pos++] = '0';
+		buf[pos++] = '.';
+		buf[pos++] = '0';
+		return pos;
+	}
+
+	/**
+	 * The decimal a finite double is written as: its shortest digits, with
+	 * the scale of that layout, on any JDK.
+	 */
+	public static BigDecimal decimal(double value) {
+		char[] buf = new char[MAX_LENGTH];
+		return new BigDecimal(buf, 0, writeDouble(value, buf, 0));
+	}
+
+	static int writeDate(LocalDate date, char[] buf, int pos) {
+		int year = date.getYear();
+		if (year < 0 || year > 9999) {
+			return writeString(date.toString(), buf, pos);
+		}
+		pos = writePadded(year / 100, buf, pos);
+		pos = writePadded(year % 100, buf, pos);
+		buf[pos++] = '-';
+		pos = writePadded(date.getMonthValue(), buf, pos);
+		buf[pos++] = '-';
+		return writePadded(date.getDayOfMonth(), buf, pos);
+	}
+
+	static int writeDateTime(LocalDateTime dateTime, char[] buf, int pos) {
+		pos = writeDate(dateTime.toLocalDate(), buf, pos);
+		buf[pos++] = 'T';
+		pos = writePadded(dateTime.getHour(), buf, pos);
+		buf[pos++] = ':';
+		pos = writePadded(dateTime.getMinute(), buf, pos);
+		int second = dateTime.getSecond();
+		int nano = dateTime.getNano();
+		if (second == 0 && nano == 0) {
+			return pos;
+		}
+		buf[pos++] = ':';
+		pos = writePadded(second, buf, pos);
+		if (nano == 0) {
+			return pos;
+		}
+		buf[pos++] = '.';
+		int digits = 9;
+		if (nano % 1000_000 == 0) {
+			nano /= 1000_000;
+			digits = 3;
+		} else if (nano % 1000 == 0) {
+			nano /= 1000;
+			digits = 6;
+		}
+		int end = pos + digits;
+		for (int i = end - 1; i >= pos; i--) {
+			buf[i] = (char) ('0' + nano % 10);
+			nano /= 10;
+		}
+		return end;
+	}
+
+	private static int writeString(String text, char[] buf, int pos) {
+		text.getChars(0, text.length(), buf, pos);
+		return pos + text.length();
+	}
+
+	private static int writePadded(int value, char[] buf, int pos) {
+		buf[pos] = TENS[value];
+		buf[pos + 1] = ONES[value];
+		return pos + 2;
+	}
+
+	/**
+	 * Finds the shortest decimal in the rounding interval of c 2^q, section 9
+	 * of Giulietti's "The Schubfach way to render doubles".
+	 */
+	private static int shortest(int q, long c, int dk, char[] buf, int pos) {
+		int out = (int) c & 1;
+		long cb = c << 2;
+		long cbr = cb + 2;
+		long cbl;
+		int k;
+		if (c != C_MIN || q == Q_MIN) {
+			cbl = cb - 2;
+			k = flog10pow2(q);
+		} else {
+			cbl = cb - 1;
+			k = flog10threeQuartersPow2(q);
+		}
+		int h = q + flog2pow10(-k) + 2;
+		int index = k - K_MIN << 1;
+		long g1 = G[index];
+		long g0 = G[index + 1];
+
+		long vb = roundOdd(g1, g0, cb << h);
+		long vbl = roundOdd(g1, g0, cbl << h);
+		long vbr = roundOdd(g1, g0, cbr << h);
+
+		long s = vb >> 2;
+		if (s >= 100) {
+			// one digit less, if a multiple of ten is in the interval
+			long sp10 = 10 * JFastDouble.unsignedMultiplyHigh(s, 115_292_150_460_684_698L << 4);
+			long tp10 = sp10 + 10;
+			boolean upin = vbl + out <= sp10 << 2;
+			boolean wpin = (tp10 << 2) + out <= vbr;
+			if (upin != wpin) {
+				return layout(upin ? sp10 : tp10, k, buf, pos);
+			}
+		}
+		long t = s + 1;
+		boolean uin = vbl + out <= s << 2;
+		boolean win = (t << 2) + out <= vbr;
+		if (uin != win) {
+			return layout(uin ? s : t, k + dk, buf, pos);
+		}
+		long cmp = vb - (s + t << 1);
+		return layout(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk, buf, pos);
+	}
+
+	private static long roundOdd(long g1, long g0, long cp) {
+		long x1 = JFastDouble.unsignedMultiplyHigh(g0, cp);
+		long y0 = g1 * cp;
+		long y1 = JFastDouble.unsignedMultiplyHigh(g1, cp);
+		long z = (y0 >>> 1) + x1;
+		long vbp = y1 + (z >>> 63);
+		return vbp | (z & Long.MAX_VALUE) + Long.MAX_VALUE >>> 63;
+	}
+
+	/**
+	 * Lays out f 10^e in plain notation between 10^-3 and 10^7 and in
+	 * computerized scientific notation otherwise, always with a fraction.
+	 */
+	private static int layout(long f, int e, char[] buf, int pos) {
+		while (f % 10 == 0) {
+			f /= 10;
+			e++;
+		}
+		int n = digits(f);
+		int exponent = n + e - 1;
+		if (exponent >= 0 && exponent < 7) {
+			int end = writeLong(f, buf, pos);
+			int point = pos + exponent + 1;
+			if (end <= point) {
+				while (end < point) {
+					buf[end++] = '0';
+				}
+				buf[end++] = '.';
+				buf[end++] = '0';
+				return end;
+			}
+			System.arraycopy(buf, point, buf, point + 1, end - point);
+			buf[point] = '.';
+			return end + 1;
+		}
+		if (exponent < 0 && exponent >= -3) {
+			buf[pos++] = '0';
+			buf[pos++] = '.';
+			for (int i = -1; i > exponent; i--) {
+				buf[pos++] = '0';
+			}
+			return writeLong(f, buf, pos);
+		}
+		int end = writeLong(f, buf, pos + 1);
+		buf[pos] = buf[pos + 1];
+		buf[pos + 1] = '.';
+		if (n == 1) {
+			buf[end++] = '0';
+		}
+		buf[end++] = 'E';
+		return writeInt(exponent, buf, end);
+	}
+
+	private static int digits(long value) {
+		long power = 10;
+		for (int i = 1; i < 19; i++) {
+			if (value < power) {
+				return i;
+			}
+			power *= 10;
+		}
+		return 19;
+	}
+
+	/**
+	 * floor(q log10(2)).
+	 */
+	private static int flog10pow2(int q) {
+		return (int) (q * 661_971_961_083L >> 41);
+	}
+
+	/**
+	 * floor(log10(3/4 2^q)).
+	 */
+	private static int flog10threeQuartersPow2(int q) {
+		return (int) (q * 661_971_961_083L - 274_743_187_321L >> 41);
+	}
+
+	/**
+	 * floor(q log2(10)).
+	 */
+	private static int flog2pow10(int q) {
+		return (int) (q * 913_124_641_741L >> 38);
+	}
+
+	private static long[] powersOfTen() {
+		long[] powers = new long[2 * (K_MAX - K_MIN + 1)];
+		BigInteger mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+		for (int k = K_MIN; k <= K_MAX; k++) {
+			int e = -k;
+			int r = flog2pow10(e) - 125;
+			BigInteger g;
+			if (e >= 0) {
+				BigInteger power = BigInteger.TEN.pow(e);
+				g = r >= 0 ? power.shiftRight(r) : power.shiftLeft(-r);
+			} else {
+				g = BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(-e));
+			}
+			g = g.add(BigInteger.ONE);
+			int index = k - K_MIN << 1;
+			powers[index] = g.shiftRight(63).longValue();
+			powers[index + 1] = g.and(mask).longValue();
+		}
+		return powers;
+	}
+}
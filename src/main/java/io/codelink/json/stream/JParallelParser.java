@@ -0,0 +1,163 @@
+package io.codelink.json.stream;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import io.codelink.json.JArray;
+import io.codelink.json.JElement;
+
+/**
+ * Parses a document whose top level is a large array on a ForkJoinPool. One
+ * sequential pass finds the element boundaries by matching brackets and
+ * quotes only, then ranges of elements are parsed as pool tasks into their
+ * slots, so the JArray keeps the document order. Other documents, and
+ * arrays shorter than {@link #DEFAULT_THRESHOLD} chars, are parsed on the
+ * calling thread.
+ */
+public class JParallelParser {
+
+	public static final int DEFAULT_THRESHOLD = 256 * 1024;
+
+	private final ForkJoinPool pool;
+	private final JSharedParser parser;
+	private final int threshold;
+
+	public JParallelParser() {
+		this(ForkJoinPool.commonPool(), JSharedParser.DEFAULT, DEFAULT_THRESHOLD);
+	}
+
+	public JParallelParser(ForkJoinPool pool) {
+		this(pool, JSharedParser.DEFAULT, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @param parser
+	 *            parses the elements, and carries their configuration
+	 * @param threshold
+	 *            the document length, in chars, from which arrays are parsed
+	 *            in parallel
+	 */
+	public JParallelParser(ForkJoinPool pool, JSharedParser parser, int threshold) {
+		this.pool = pool;
+		this.parser = parser;
+		this.threshold = threshold;
+	}
+
+	public JElement parse(String json) {
+		return parse(json.toCharArray());
+	}
+
+	public JElement parse(char[] chars) {
+		int index = skipWhiteSpace(chars, 0);
+		if (chars.length < threshold || index == chars.length || chars[index] != '[') {
+			return parser.parse(chars);
+		}
+
+		int[] bounds = new int[1024];
+		int count = 0;
+		index = skipWhiteSpace(chars, index + 1);
+		if (index < chars.length && chars[index] == ']') {
+			return JArray.EMPTY;
+		}
+		while (true) {
+			if (index == chars.length) {
+				throw new IllegalArgumentException("Did not find end of Json Array");
+			}
+			int end = skipValue(chars, index);
+			if (count + 2 > bounds.length) {
+				bounds = Arrays.copyOf(bounds, bounds.length << 1);
+			}
+			bounds[count++] = index;
+			bounds[count++] = end;
+			index = skipWhiteSpace(chars, end);
+			if (index < chars.length && chars[index] == ',') {
+				index = skipWhiteSpace(chars, index + 1);
+			} else if (index < chars.length && chars[index] == ']') {
+				break;
+			} else {
+				throw new IllegalArgumentException(String.format("expecting a ',' or a ']', but got \nthe current character of %s on array index of %s \n", index < chars.length ? chars[index] : "end of input", count >> 1));
+			}
+		}
+
+		JElement[] elements = new JElement[count >> 1];
+		int batch = Math.max(1, elements.length / (pool.getParallelism() * 8));
+		pool.invoke(new ParseRange(chars, bounds, elements, 0, elements.length, batch));
+
+		JArray array = new JArray(elements.length);
+		for (JElement element : elements) {
+			array.add(element);
+		}
+		return array;
+	}
+
+	private class ParseRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final char[] chars;
+		private final int[] bounds;
+		private final JElement[] elements;
+		private final int from;
+		private final int to;
+		private final int batch;
+
+		ParseRange(char[] chars, int[] bounds, JElement[] elements, int from, int to, int batch) {
+			this.chars = chars;
+			this.bounds = bounds;
+			this.elements = elements;
+			this.from = from;
+			this.to = to;
+			this.batch = batch;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= batch) {
+				for (int i = from; i < to; i++) {
+					int start = bounds[i << 1];
+					elements[i] = parser.parse(chars, start, bounds[(i << 1) + 1] - start);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new ParseRange(chars, bounds, elements, from, middle, batch), new ParseRange(chars, bounds, elements, middle, to, batch));
+		}
+	}
+
+	private static int skipWhiteSpace(char[] chars, int index) {
+		while (index < chars.length && chars[index] <= ' ') {
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the index following the value that starts at {@code index}.
+	 */
+	private static int skipValue(char[] chars, int index) {
+		char c = chars[index];
+		if (c == '"') {
+			return JElementParser.skipString(chars, index) + 1;
+		}
+		if (c != '{' && c != '[') {
+			while (index < chars.length && chars[index] > ' ' && !JElementParser.isDelimiter(chars[index])) {
+				index++;
+			}
+			return index;
+		}
+		char open = c;
+		int depth = 0;
+		for (; index < chars.length; index++) {
+			c = chars[index];
+			if (c == '"') {
+				index = JElementParser.skipString(chars, index);
+			} else if (c == '{' || c == '[') {
+				depth++;
+			} else if ((c == '}' || c == ']') && --depth == 0) {
+				return index + 1;
+			}
+		}
+		throw new IllegalArgumentException("Did not find end of " + (open == '{' ? "JObject" : "Json Array"));
+	}
+}
@@ -0,0 +1,173 @@
+package io.codelink.json.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import io.codelink.json.JArray;
+import io.codelink.json.JElement;
+
+/**
+ * Serializes large JArrays to UTF-8 on a ForkJoinPool. The elements are split
+ * into ranges, each range is written by its own JElementByteSerializer into
+ * its own buffer, and the buffers are joined in order, so the output is
+ * byte-identical to the sequential serializer. Arrays shorter than the
+ * threshold are written on the calling thread. The array must not change
+ * while it is written.
+ */
+public class JParallelSerializer {
+
+	public static final int DEFAULT_THRESHOLD = 4096;
+
+	private static final byte[] OPEN = { '[' };
+	private static final byte[] COMMA = { ',' };
+	private static final byte[] CLOSE = { ']' };
+
+	private final ForkJoinPool pool;
+	private final int threshold;
+
+	public JParallelSerializer() {
+		this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+	}
+
+	public JParallelSerializer(ForkJoinPool pool) {
+		this(pool, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @param threshold
+	 *            the number of elements from which arrays are written in
+	 *            parallel
+	 */
+	public JParallelSerializer(ForkJoinPool pool, int threshold) {
+		this.pool = pool;
+		this.threshold = Math.max(1, threshold);
+	}
+
+	public byte[] toBytes(JArray array) {
+		byte[][] ranges = serializeRanges(array);
+		if (ranges == null) {
+			return new JElementByteSerializer().toBytes(array);
+		}
+		int length = ranges.length + 1;
+		for (byte[] range : ranges) {
+			length += range.length;
+		}
+		byte[] bytes = new byte[length];
+		int position = 0;
+		bytes[position++] = '[';
+		for (int i = 0; i < ranges.length; i++) {
+			if (i > 0) {
+				bytes[position++] = ',';
+			}
+			System.arraycopy(ranges[i], 0, bytes, position, ranges[i].length);
+			position += ranges[i].length;
+		}
+		bytes[position] = ']';
+		return bytes;
+	}
+
+	public void serialize(JArray array, OutputStream out) throws IOException {
+		byte[][] ranges = serializeRanges(array);
+		if (ranges == null) {
+			new JElementByteSerializer().serialize(array, out);
+			return;
+		}
+		out.write('[');
+		for (int i = 0; i < ranges.length; i++) {
+			if (i > 0) {
+				out.write(',');
+			}
+			out.write(ranges[i]);
+		}
+		out.write(']');
+	}
+
+	/**
+	 * Writes the range buffers, with the brackets and commas between them,
+	 * through gathering writes.
+	 */
+	public void serialize(JArray array, GatheringByteChannel channel) throws IOException {
+		byte[][] ranges = serializeRanges(array);
+		if (ranges == null) {
+			new JElementByteSerializer().serialize(array, channel);
+			return;
+		}
+		ByteBuffer[] buffers = new ByteBuffer[ranges.length * 2 + 1];
+		long remaining = 0;
+		for (int i = 0; i < ranges.length; i++) {
+			buffers[i * 2] = ByteBuffer.wrap(i == 0 ? OPEN : COMMA);
+			buffers[i * 2 + 1] = ByteBuffer.wrap(ranges[i]);
+			remaining += ranges[i].length + 1;
+		}
+		buffers[buffers.length - 1] = ByteBuffer.wrap(CLOSE);
+		remaining++;
+		while (remaining > 0) {
+			remaining -= channel.write(buffers);
+		}
+	}
+
+	/**
+	 * The serialized ranges, without the commas between them, or null if the
+	 * array is below the threshold.
+	 */
+	private byte[][] serializeRanges(JArray array) {
+		int size = array.size();
+		if (size < threshold) {
+			return null;
+		}
+		JElement[] elements = new JElement[size];
+		int count = 0;
+		for (Iterator<JElement> iterator = array.rawIterator(); iterator.hasNext() && count < size;) {
+			elements[count++] = iterator.next();
+		}
+		if (count < size) {
+			elements = Arrays.copyOf(elements, count);
+		}
+		int rangeCount = Math.max(1, Math.min(elements.length, pool.getParallelism() * 4));
+		byte[][] ranges = new byte[rangeCount][];
+		pool.invoke(new SerializeRanges(elements, ranges, 0, rangeCount));
+		return ranges;
+	}
+
+	private static class SerializeRanges extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final JElement[] elements;
+		private final byte[][] ranges;
+		private final int from;
+		private final int to;
+
+		SerializeRanges(JElement[] elements, byte[][] ranges, int from, int to) {
+			this.elements = elements;
+			this.ranges = ranges;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new SerializeRanges(elements, ranges, from, middle), new SerializeRanges(elements, ranges, middle, to));
+				return;
+			}
+			int start = (int) ((long) elements.length * from / ranges.length);
+			int end = (int) ((long) elements.length * to / ranges.length);
+			JElementByteSerializer serializer = new JElementByteSerializer(JElementByteSerializer.DEFAULT_BUFFER_SIZE * 8);
+			for (int i = start; i < end; i++) {
+				if (i > start) {
+					serializer.writeByte(',');
+				}
+				serializer.write(elements[i]);
+			}
+			ranges[from] = Arrays.copyOf(serializer.staged(), serializer.stagedLength());
+		}
+	}
+}
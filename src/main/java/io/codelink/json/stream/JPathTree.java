@@ -0,0 +1,37 @@
+package io.codelink.json.stream;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The dotted paths requested from a projected parse, merged into a tree of
+ * property names. A selected node takes its whole value.
+ */
+final class JPathTree {
+
+	private final Map<String, JPathTree> children = new HashMap<>();
+	private boolean selected;
+
+	static JPathTree of(String... paths) {
+		JPathTree root = new JPathTree();
+		for (String path : paths) {
+			if (path == null || path.isEmpty()) {
+				throw new IllegalArgumentException("Path must not be empty!");
+			}
+			JPathTree node = root;
+			for (String property : path.split("\\.")) {
+				node = node.children.computeIfAbsent(property, p -> new JPathTree());
+			}
+			node.selected = true;
+		}
+		return root;
+	}
+
+	JPathTree child(String property) {
+		return children.get(property);
+	}
+
+	boolean selected() {
+		return selected;
+	}
+}
@@ -0,0 +1,98 @@
+package io.codelink.json.stream;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import io.codelink.json.JElement;
+import io.codelink.json.JObject;
+
+/**
+ * Key sequences ("shapes") of recently written objects, with each quoted key
+ * pre-encoded together with the brace or comma before it and the colon after.
+ * A bounded table indexed by size and first key; a new shape replaces
+ * whatever sat in its slot.
+ */
+final class JShapes {
+
+	static final int MAX_KEYS = 64;
+
+	private static final int SLOTS = 64;
+
+	private final Shape[] slots = new Shape[SLOTS];
+
+	static final class Shape {
+
+		private final String[] keys;
+		final char[][] chars;
+		private byte[][] bytes;
+
+		private Shape(String[] keys) {
+			this.keys = keys;
+			this.chars = new char[keys.length][];
+			for (int i = 0; i < keys.length; i++) {
+				StringWriter fragment = new StringWriter();
+				fragment.write(i == 0 ? '{' : ',');
+				fragment.write('"');
+				try {
+					JElementSerializer.serializeString(keys[i], fragment);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				fragment.write("\":");
+				chars[i] = fragment.toString().toCharArray();
+			}
+		}
+
+		boolean matches(int index, String key) {
+			String expected = keys[index];
+			return expected == key || expected.equals(key);
+		}
+
+		/**
+		 * The UTF-8 fragments, encoded on first use.
+		 */
+		byte[][] bytes() {
+			if (bytes == null) {
+				byte[][] encoded = new byte[chars.length][];
+				for (int i = 0; i < chars.length; i++) {
+					encoded[i] = new String(chars[i]).getBytes(StandardCharsets.UTF_8);
+				}
+				bytes = encoded;
+			}
+			return bytes;
+		}
+	}
+
+	Shape lookup(int size, String firstKey) {
+		Shape shape = slots[slot(size, firstKey)];
+		return shape != null && shape.keys.length == size ? shape : null;
+	}
+
+	/**
+	 * Records the key sequence of the object, unless it is empty or larger
+	 * than MAX_KEYS.
+	 */
+	void learn(JObject object) {
+		int size = object.size();
+		if (size == 0 || size > MAX_KEYS) {
+			return;
+		}
+		String[] keys = new String[size];
+		int i = 0;
+		for (Iterator<Entry<String, JElement>> iterator = object.rawIterator(); iterator.hasNext() && i < size;) {
+			keys[i++] = iterator.next().getKey();
+		}
+		if (i == size) {
+			slots[slot(size, keys[0])] = new Shape(keys);
+		}
+	}
+
+	private static int slot(int size, String firstKey) {
+		int h = firstKey.hashCode() * 31 + size;
+		return (h ^ h >>> 16) & SLOTS - 1;
+	}
+}
@@ -0,0 +1,140 @@
+package io.codelink.json.stream;
+
+import java.nio.ByteBuffer;
+
+import io.codelink.json.JElement;
+import io.codelink.json.JObject;
+
+/**
+ * A thread-safe parser with an immutable configuration. Each thread reuses
+ * its own JElementParser, with its scratch buffers, symbol tables and
+ * builders, and the cursor is reset after every call so an idle thread
+ * retains no document. Reentrant calls get a parser of their own.
+ */
+public final class JSharedParser {
+
+	public static final JSharedParser DEFAULT = new JSharedParser(JDecimalMode.BIG_DECIMAL, false, 0, 0);
+
+	private final JDecimalMode decimalMode;
+	private final boolean stringViews;
+	private final int dedupMaxLength;
+	private final int dedupMaxEntries;
+
+	private final ThreadLocal<JElementParser> parsers = ThreadLocal.withInitial(this::newParser);
+
+	JSharedParser(JDecimalMode decimalMode, boolean stringViews, int dedupMaxLength, int dedupMaxEntries) {
+		if (decimalMode == null) {
+			throw new IllegalArgumentException("Decimal mode must not be null!");
+		}
+		this.decimalMode = decimalMode;
+		this.stringViews = stringViews;
+		this.dedupMaxLength = dedupMaxLength;
+		this.dedupMaxEntries = dedupMaxEntries;
+	}
+
+	public JSharedParser withDecimalMode(JDecimalMode mode) {
+		return new JSharedParser(mode, stringViews, dedupMaxLength, dedupMaxEntries);
+	}
+
+	public JSharedParser withStringViews(boolean enabled) {
+		return new JSharedParser(decimalMode, enabled, dedupMaxLength, dedupMaxEntries);
+	}
+
+	/**
+	 * See {@link JElementParser#deduplicateStrings(int, int)}; the values are
+	 * shared per thread.
+	 */
+	public JSharedParser withStringDeduplication(int maxLength, int maxEntries) {
+		return new JSharedParser(decimalMode, stringViews, maxLength, maxEntries);
+	}
+
+	public JElement parse(String json) {
+		JElementParser parser = acquire();
+		try {
+			return parser.parse(json);
+		} finally {
+			parser.release();
+		}
+	}
+
+	public JElement parse(char[] chars) {
+		JElementParser parser = acquire();
+		try {
+			return parser.parse(chars);
+		} finally {
+			parser.release();
+		}
+	}
+
+	public JElement parse(char[] chars, int offset, int length) {
+		JElementParser parser = acquire();
+		try {
+			return parser.parse(chars, offset, length);
+		} finally {
+			parser.release();
+		}
+	}
+
+	public JObject parse(String json, String... paths) {
+		JElementParser parser = acquire();
+		try {
+			return parser.parse(json, paths);
+		} finally {
+			parser.release();
+		}
+	}
+
+	public JElement parseLazy(String json) {
+		JElementParser parser = acquire();
+		try {
+			return parser.parseLazy(json);
+		} finally {
+			parser.release();
+		}
+	}
+
+	public JElement parseLazy(char[] chars, int offset, int length) {
+		JElementParser parser = acquire();
+		try {
+			return parser.parseLazy(chars, offset, length);
+		} finally {
+			parser.release();
+		}
+	}
+
+	public JElement parse(byte[] utf8) {
+		return parse(utf8, 0, utf8.length);
+	}
+
+	public JElement parse(byte[] utf8, int offset, int length) {
+		JElementParser parser = acquire();
+		try {
+			return parser.parse(utf8, offset, length);
+		} finally {
+			parser.release();
+		}
+	}
+
+	public JElement parse(ByteBuffer utf8) {
+		JElementParser parser = acquire();
+		try {
+			return parser.parse(utf8);
+		} finally {
+			parser.release();
+		}
+	}
+
+	private JElementParser acquire() {
+		JElementParser parser = parsers.get();
+		return parser.acquire() ? parser : newParser();
+	}
+
+	private JElementParser newParser() {
+		JElementParser parser = new JElementParser().decimalMode(decimalMode).stringViews(stringViews);
+		if (dedupMaxEntries > 0) {
+			parser.deduplicateStrings(dedupMaxLength, dedupMaxEntries);
+		}
+		parser.shared(this);
+		return parser;
+	}
+}
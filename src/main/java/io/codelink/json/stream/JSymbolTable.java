@@ -0,0 +1,124 @@
+package io.codelink.json.stream;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Canonical Strings for the object keys, and optionally the short string
+ * values, seen by a parser. Lookups hash the characters in place, so a text
+ * that is already known costs no allocation. The table is bounded: once it
+ * holds {@code maxSize} entries new texts are returned without being kept.
+ */
+final class JSymbolTable {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final int maxLength;
+	private final int maxSize;
+
+	private String[] symbols = new String[INITIAL_CAPACITY];
+	private int[] hashes = new int[INITIAL_CAPACITY];
+	private int size;
+
+	JSymbolTable(int maxLength, int maxSize) {
+		if (maxLength < 0 || maxSize < 0) {
+			throw new IllegalArgumentException("Symbol table limits must not be negative!");
+		}
+		this.maxLength = maxLength;
+		this.maxSize = maxSize;
+	}
+
+	boolean accepts(int length) {
+		return length <= maxLength;
+	}
+
+	String lookup(char[] chars, int offset, int length) {
+		if (length > maxLength) {
+			return new String(chars, offset, length);
+		}
+		int hash = 0;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			hash = 31 * hash + chars[i];
+		}
+		int mask = symbols.length - 1;
+		for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+			String symbol = symbols[slot];
+			if (symbol == null) {
+				return add(slot, hash, new String(chars, offset, length));
+			}
+			if (hashes[slot] == hash && symbol.length() == length && matches(symbol, chars, offset)) {
+				return symbol;
+			}
+		}
+	}
+
+	/**
+	 * Looks up ASCII bytes; callers must not pass bytes above 0x7F.
+	 */
+	String lookup(byte[] bytes, int offset, int length) {
+		if (length > maxLength) {
+			return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+		}
+		int hash = 0;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		int mask = symbols.length - 1;
+		for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+			String symbol = symbols[slot];
+			if (symbol == null) {
+				return add(slot, hash, new String(bytes, offset, length, StandardCharsets.ISO_8859_1));
+			}
+			if (hashes[slot] == hash && symbol.length() == length && matches(symbol, bytes, offset)) {
+				return symbol;
+			}
+		}
+	}
+
+	private String add(int slot, int hash, String symbol) {
+		if (size >= maxSize) {
+			return symbol;
+		}
+		symbols[slot] = symbol;
+		hashes[slot] = hash;
+		if (++size << 1 > symbols.length) {
+			rehash();
+		}
+		return symbol;
+	}
+
+	private void rehash() {
+		String[] oldSymbols = symbols;
+		int[] oldHashes = hashes;
+		symbols = new String[oldSymbols.length << 1];
+		hashes = new int[oldSymbols.length << 1];
+		int mask = symbols.length - 1;
+		for (int i = 0; i < oldSymbols.length; i++) {
+			if (oldSymbols[i] != null) {
+				int slot = spread(oldHashes[i]) & mask;
+				while (symbols[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				symbols[slot] = oldSymbols[i];
+				hashes[slot] = oldHashes[i];
+			}
+		}
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean matches(String symbol, char[] chars, int offset) {
+		for (int i = 0, length = symbol.length(); i < length; i++) {
+			if (symbol.charAt(i) != chars[offset + i]) return false;
+		}
+		return true;
+	}
+
+	private static boolean matches(String symbol, byte[] bytes, int offset) {
+		for (int i = 0, length = symbol.length(); i < length; i++) {
+			if (symbol.charAt(i) != bytes[offset + i]) return false;
+		}
+		return true;
+	}
+}
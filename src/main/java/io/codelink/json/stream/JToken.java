@@ -0,0 +1,7 @@
+package io.codelink.json.stream;
+
+public enum JToken {
+
+	START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, NAME, STRING, NUMBER, TRUE, FALSE, NULL, END_DOCUMENT
+
+}
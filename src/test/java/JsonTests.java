@@ -2,26 +2,68 @@ import static io.codelink.json.Json.addJsonBuilder;
 import static io.codelink.json.Json.addObjectExtractor;
 import static io.codelink.json.Json.asString;
 import static io.codelink.json.Json.fromString;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import io.codelink.json.JArray;
 import io.codelink.json.JBool;
+import io.codelink.json.JDate;
 import io.codelink.json.JElement;
 import io.codelink.json.JNull;
+import io.codelink.json.JNumType;
 import io.codelink.json.JNumber;
 import io.codelink.json.JObject;
+import io.codelink.json.JRaw;
 import io.codelink.json.JStr;
+import io.codelink.json.JVal;
+import io.codelink.json.Json;
+import io.codelink.json.stream.JArrayExporter;
+import io.codelink.json.stream.JChunkedSerializer;
+import io.codelink.json.stream.JDecimalMode;
+import io.codelink.json.stream.JElementByteSerializer;
+import io.codelink.json.stream.JElementFeedParser;
 import io.codelink.json.stream.JElementParser;
+import io.codelink.json.stream.JElementReader;
 import io.codelink.json.stream.JElementSerializer;
+import io.codelink.json.stream.JElementWriter;
+import io.codelink.json.stream.JIndexedParser;
+import io.codelink.json.stream.JLinesReader;
+import io.codelink.json.stream.JLinesWriter;
+import io.codelink.json.stream.JParallelParser;
+import io.codelink.json.stream.JParallelSerializer;
+import io.codelink.json.stream.JSharedParser;
+import io.codelink.json.stream.JToken;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -103,6 +145,813 @@ public class JsonTests {
 		System.out.println(writer.toString());
 	}
 	
+	@Test
+	public void testParseUtf8Bytes() {
+		byte[] json = "{\"nome\":\"Jo\u00e3o \\\"A\u00e7\u00e3o\\\" \\u00e9 \ud83d\ude00\",\"idade\":-30,\"saldo\":500.50,\"xpto\":43343434343434,\"esportes\":[\"tenis\",{}],\"ativo\":true}".getBytes(StandardCharsets.UTF_8);
+		JElementParser parser = new JElementParser();
+
+		JObject heap = parser.parse(json).asObject();
+		assertEquals("Jo\u00e3o \"A\u00e7\u00e3o\" \u00e9 \ud83d\ude00", heap.str("nome"));
+		assertEquals(Integer.valueOf(-30), heap.integer("idade"));
+		assertEquals(new BigDecimal("500.50"), heap.decimal("saldo"));
+		assertEquals(Long.valueOf(43343434343434L), heap.longint("xpto"));
+		assertEquals("tenis", heap.array("esportes").str(0));
+		assertTrue(heap.bool("ativo"));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(json.length + 2);
+		direct.put((byte) ' ').put(json).put((byte) ' ').flip();
+		JObject fromDirect = parser.parse(direct).asObject();
+		assertEquals(heap.toString(), fromDirect.toString());
+		assertEquals(0, direct.position());
+	}
+
+	@Test
+	public void testPullReader() throws IOException {
+		String json = "{\"meta\":{\"skip\":[1,{\"a\":\"\\\"}\"}]},\"registros\":[{\"id\":1,\"nome\":\"Jo\\u00e3o\\nSilva\"},{\"id\":43343434343434,\"saldo\":-500.50,\"ativo\":false,\"obs\":null}]}";
+		JElementReader reader = new JElementReader(new StringReader(json), 16);
+
+		assertEquals(JToken.START_OBJECT, reader.next());
+		assertEquals(JToken.NAME, reader.next());
+		assertEquals("meta", reader.name());
+		assertEquals(JToken.START_OBJECT, reader.next());
+		reader.skipChildren();
+		assertEquals(JToken.END_OBJECT, reader.token());
+
+		assertEquals(JToken.NAME, reader.next());
+		assertEquals("registros", reader.name());
+		assertEquals(JToken.START_ARRAY, reader.next());
+		JArray registros = new JArray();
+		while (reader.next() != JToken.END_ARRAY) {
+			registros.add(reader.readElement());
+		}
+		assertEquals(JToken.END_OBJECT, reader.next());
+		assertEquals(JToken.END_DOCUMENT, reader.next());
+
+		assertEquals("Jo\u00e3o\nSilva", registros.object(0).str("nome"));
+		assertEquals(Long.valueOf(43343434343434L), registros.object(1).longint("id"));
+		assertEquals(new BigDecimal("-500.50"), registros.object(1).decimal("saldo"));
+		assertEquals(new JElementParser().parse(json.getBytes(StandardCharsets.UTF_8)).asObject().array("registros").toString(), registros.toString());
+	}
+
+	@Test
+	public void testFeedParserAcrossChunks() {
+		String json = "{\"nome\":\"Jo\u00e3o \\\"A\u00e7\u00e3o\\\" \ud83d\ude00\",\"itens\":[1,-2.50,true,null,[],{\"a\":false}],\"xpto\":43343434343434} 42 \"fim\"";
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		String expected = new JElementParser().parse(json.substring(0, json.indexOf(" 42")).getBytes(StandardCharsets.UTF_8)).toString();
+
+		for (int chunkSize = 1; chunkSize <= bytes.length; chunkSize++) {
+			JElementFeedParser parser = new JElementFeedParser();
+			List<JElement> elements = new ArrayList<>();
+			for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+				ByteBuffer chunk = ByteBuffer.allocateDirect(Math.min(chunkSize, bytes.length - offset));
+				chunk.put(bytes, offset, chunk.capacity()).flip();
+				if (parser.feed(chunk) == JElementFeedParser.Status.ELEMENT_READY) {
+					for (JElement e = parser.poll(); e != null; e = parser.poll()) {
+						elements.add(e);
+					}
+				}
+				assertEquals(0, chunk.remaining());
+			}
+			parser.endOfInput();
+			for (JElement e = parser.poll(); e != null; e = parser.poll()) {
+				elements.add(e);
+			}
+			assertEquals(3, elements.size());
+
+			assertEquals(expected, elements.get(0).toString());
+			assertEquals(Integer.valueOf(42), elements.get(1).asVal().integer());
+			assertEquals("fim", elements.get(2).asVal().string());
+		}
+
+		JElementFeedParser parser = new JElementFeedParser();
+		byte[] escape = "[\"a\\".getBytes(StandardCharsets.UTF_8);
+		parser.feed(escape, 0, escape.length);
+		parser.reset();
+		byte[] next = "\"\\\"\" ".getBytes(StandardCharsets.UTF_8);
+		assertEquals(JElementFeedParser.Status.ELEMENT_READY, parser.feed(next, 0, next.length));
+		assertEquals("\"", parser.poll().asVal().string());
+	}
+
+	@Test
+	public void testJsonLinesRoundTrip() throws IOException {
+		Path file = Files.createTempFile("registros", ".ndjson");
+		try {
+			try (JLinesWriter writer = new JLinesWriter(file)) {
+				for (int i = 0; i < 1000; i++) {
+					JObject registro = new JObject();
+					registro.set("id", i);
+					registro.set("nome", "registro " + i);
+					registro.set("itens", new JArray().addAll(i, "x"));
+					writer.write(registro);
+				}
+			}
+
+			ForkJoinPool pool = new ForkJoinPool(4);
+			try (JLinesReader reader = new JLinesReader(file, pool, 4096, 512)) {
+				JArray registros = reader.readAll();
+				assertEquals((Integer) 1000, registros.size());
+				for (int i = 0; i < 1000; i++) {
+					assertEquals(Integer.valueOf(i), registros.object(i).integer("id"));
+				}
+
+				AtomicInteger soma = new AtomicInteger();
+				reader.forEach((JElement e) -> soma.addAndGet(e.asObject().integer("id")), false);
+				assertEquals(999 * 1000 / 2, soma.get());
+			} finally {
+				pool.shutdown();
+			}
+		} finally {
+			Files.delete(file);
+		}
+
+		JObject pretty = new JElementParser().parseLazy("{\n  \"a\": {\n    \"b\": [1, 2]\n  },\n  \"c\": \"x\"\n}").asObject();
+		pretty.toString();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (JLinesWriter writer = new JLinesWriter(Channels.newChannel(out), 64)) {
+			writer.write(pretty).write(pretty.get("a"));
+		}
+		assertEquals("{\"a\":{\"b\":[1, 2]},\"c\":\"x\"}\n{\"b\":[1, 2]}\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testLazyParse() {
+		String json = "{\"cliente\":{\"nome\":\"Luciano\",\"idade\":-30},\"pedido\":{ \"itens\" : [1, 2,3] },\"tags\":[\"a\",{\"b\":true}],\"total\":500.50}";
+		JObject root = new JElementParser().parseLazy(json).asObject();
+
+		assertEquals("Luciano", root.str("cliente.nome"));
+		assertEquals(new BigDecimal("500.50"), root.decimal("total"));
+		assertTrue(root.array("tags").object(1).bool("b"));
+		assertEquals("{\"cliente\":{\"nome\":\"Luciano\",\"idade\":-30},\"pedido\":{ \"itens\" : [1, 2,3] },\"tags\":[\"a\",{\"b\":true}],\"total\":500.50}", root.toString());
+
+		root.set("cliente.idade", 31);
+		assertEquals("{\"cliente\":{\"nome\":\"Luciano\",\"idade\":31},\"pedido\":{ \"itens\" : [1, 2,3] },\"tags\":[\"a\",{\"b\":true}],\"total\":500.50}", root.toString());
+
+		for (Entry<String, JElement> e : root) {
+			assertTrue(!(e.getValue() instanceof JRaw));
+		}
+		assertEquals((Integer) 3, root.array("pedido.itens").size());
+		assertEquals(Integer.valueOf(3), root.array("pedido.itens").integer(2));
+
+		String nested = "{\"a\":{\"b\":[1.5,{\"c\":2.5}]}}";
+		JObject doubles = new JElementParser().decimalMode(JDecimalMode.DOUBLE).parseLazy(nested).asObject();
+		assertEquals(JNumType.DOUBLE, doubles.object("a").array("b").get(0).asVal().number().numberType());
+		assertEquals(JNumType.DOUBLE, doubles.object("a").array("b").object(1).get("c").asVal().number().numberType());
+		JObject shared = JSharedParser.DEFAULT.withDecimalMode(JDecimalMode.DOUBLE).parseLazy(nested).asObject();
+		assertEquals(JNumType.DOUBLE, shared.object("a").array("b").get(0).asVal().number().numberType());
+	}
+
+	@Test
+	public void testIndexedParserMatchesParser() throws Exception {
+		String json = new String(Files.readAllBytes(Paths.get(getClass().getResource("test.json").toURI())));
+		assertEquals(parse(json).toString(), new JIndexedParser().parse(json).toString());
+
+		Random random = new Random(42);
+		for (int i = 0; i < 50; i++) {
+			StringBuilder document = new StringBuilder("[");
+			randomValue(random, document, 0);
+			String generated = document.append(']').toString();
+			assertEquals(parse(generated).toString(), new JIndexedParser().parse(generated).toString());
+		}
+	}
+
+	@Test
+	public void testSharedKeysAndValues() {
+		String json = "[{\"id\":1,\"status\":\"OK\"},{\"id\":2,\"status\":\"OK\"},{\"id\":3,\"status\":\"a very long status text\"},{\"id\":4,\"status\":\"a very long status text\"}]";
+		JElementParser parser = new JElementParser().deduplicateStrings(8, 16);
+		for (JArray records : new JArray[] { parser.parse(json).asArray(), parser.parse(json.getBytes(StandardCharsets.UTF_8)).asArray() }) {
+			JObject first = records.get(0).asObject();
+			JObject second = records.get(1).asObject();
+			assertSame(first.iterator().next().getKey(), second.iterator().next().getKey());
+			assertSame(first.str("status"), second.str("status"));
+			assertNotSame(records.get(2).asObject().str("status"), records.get(3).asObject().str("status"));
+			assertEquals(records.get(2).asObject().str("status"), records.get(3).asObject().str("status"));
+		}
+
+		JArray records = new JElementParser().parse(json).asArray();
+		assertNotSame(records.get(0).asObject().str("status"), records.get(1).asObject().str("status"));
+	}
+
+	@Test
+	public void testDecimalModes() {
+		Random random = new Random(7);
+		StringBuilder json = new StringBuilder("[");
+		List<String> numbers = new ArrayList<>();
+		for (int i = 0; i < 20000; i++) {
+			String number;
+			switch (i % 4) {
+			case 0:
+				number = Double.toString(Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE));
+				break;
+			case 1:
+				number = random.nextInt(1000000) + "." + random.nextInt(1000000) + "e" + (random.nextInt(640) - 330);
+				break;
+			case 2:
+				number = "-" + Math.abs(random.nextLong()) + "." + Math.abs(random.nextLong());
+				break;
+			default:
+				number = (random.nextInt(2000) - 1000) + "." + random.nextInt(100);
+			}
+			if (number.contains("Infinity") || number.contains("NaN")) continue;
+			numbers.add(number);
+			json.append(numbers.size() > 1 ? "," : "").append(number);
+		}
+		json.append(",1E400,2.4703282292062328E-324,4.9E-324,0.0,-0.0]");
+		numbers.addAll(Arrays.asList("1E400", "2.4703282292062328E-324", "4.9E-324", "0.0", "-0.0"));
+
+		Iterator<JElement> doubles = new JElementParser().decimalMode(JDecimalMode.DOUBLE).parse(json.toString()).asArray().iterator();
+		Iterator<JElement> lazy = new JElementParser().decimalMode(JDecimalMode.LAZY).parse(json.toString()).asArray().iterator();
+		for (String number : numbers) {
+			assertEquals(number, Double.doubleToLongBits(Double.parseDouble(number)), Double.doubleToLongBits(doubles.next().asVal().doubleValue()));
+			JVal digits = lazy.next().asVal();
+			assertEquals(number, digits.string());
+			assertEquals(new BigDecimal(number), digits.decimal());
+		}
+
+		// 19 digit mantissas above Long.MAX_VALUE
+		List<String> wide = new ArrayList<>(Arrays.asList("929.9199999999999591", "9.999999999999999999", "-18446744073709551615", "9999999999999999999e-300"));
+		for (int i = 0; i < 2000; i++) {
+			wide.add("9" + String.format("%018d", Math.abs(random.nextLong() % 1000000000000000000L)) + "e" + (random.nextInt(80) - 40));
+		}
+		JArray parsed = new JElementParser().decimalMode(JDecimalMode.DOUBLE).parse(wide.toString()).asArray();
+		for (int i = 0; i < wide.size(); i++) {
+			assertEquals(wide.get(i), Double.doubleToLongBits(Double.parseDouble(wide.get(i))), Double.doubleToLongBits(parsed.get(i).asVal().doubleValue()));
+		}
+
+		JArray integers = parse("[2147483647,2147483648,-9223372036854775808,9223372036854775808,-0]").asArray();
+		assertEquals(JNumType.INTEGER, integers.get(0).asVal().number().numberType());
+		assertEquals(JNumType.LONG, integers.get(1).asVal().number().numberType());
+		assertEquals(Long.MIN_VALUE, integers.get(2).asVal().longint().longValue());
+		assertEquals(new BigInteger("9223372036854775808"), integers.get(3).asVal().bigInteger());
+		assertEquals(0, integers.get(4).asVal().integer().intValue());
+	}
+
+	@Test
+	public void testStringEscapes() {
+		String json = "{\"text\":\"tab\\there \\\"quoted\\\" back\\\\slash \\u00e9 \\ud83d\\ude00 \\/\",\"plain\":\"no escapes\"}";
+		String expected = "tab\there \"quoted\" back\\slash \u00e9 \ud83d\ude00 /";
+		assertEquals(expected, parse(json).asObject().str("text"));
+		assertEquals(expected, new JElementParser().parse(json.getBytes(StandardCharsets.UTF_8)).asObject().str("text"));
+		assertEquals(expected, new JIndexedParser().parse(json).asObject().str("text"));
+
+		JObject views = new JElementParser().stringViews(true).parse(json).asObject();
+		assertEquals("no escapes", views.str("plain"));
+		assertEquals(expected, views.str("text"));
+
+		JObject control = new JObject();
+		control.set("text", "line\nbreak\u0001\"\\");
+		assertEquals("{\"text\":\"line\\nbreak\\u0001\\\"\\\\\"}", control.toString());
+		assertEquals(control.str("text"), parse(control.toString()).asObject().str("text"));
+		assertEquals(parse(json).toString(), views.toString());
+	}
+
+	@Test
+	public void testPathProjection() throws Exception {
+		String json = new String(Files.readAllBytes(Paths.get(getClass().getResource("test.json").toURI())));
+		JObject projected = new JElementParser().parse(json, "cliente.nome", "cliente.esportes", "ativo", "pedido.total", "xpto.valor");
+		assertEquals("{\"cliente\":{\"nome\":\"Luciano \\\"Greiner\",\"esportes\":[\"tenis\",\"snooker\",{}]},\"ativo\":true}", projected.toString());
+		assertEquals("Luciano \"Greiner", projected.str("cliente.nome"));
+		assertEquals(null, projected.get("cliente.idade"));
+	}
+
+	@Test
+	public void testSharedParserAcrossThreads() throws Exception {
+		String json = new String(Files.readAllBytes(Paths.get(getClass().getResource("test.json").toURI())));
+		String expected = parse(json).toString();
+		JSharedParser parser = JSharedParser.DEFAULT.withDecimalMode(JDecimalMode.LAZY);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<ForkJoinTask<String>> tasks = new ArrayList<>();
+			for (int i = 0; i < 64; i++) {
+				tasks.add(pool.submit(() -> parser.parse(json).toString()));
+				tasks.add(pool.submit(() -> parser.parse(json.getBytes(StandardCharsets.UTF_8)).toString()));
+			}
+			for (ForkJoinTask<String> task : tasks) {
+				assertEquals(expected, task.join());
+			}
+		} finally {
+			pool.shutdown();
+		}
+		JObject root = parse(json).asObject();
+		assertEquals(expected, root.clone().toString());
+	}
+
+	@Test
+	public void testParallelArrayParse() {
+		Random random = new Random(11);
+		StringBuilder document = new StringBuilder("[");
+		for (int i = 0; i < 2000; i++) {
+			document.append(i > 0 ? ", " : "");
+			randomValue(random, document, 1);
+		}
+		String json = document.append(']').toString();
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			JParallelParser parser = new JParallelParser(pool, JSharedParser.DEFAULT, 0);
+			assertEquals(parse(json).toString(), parser.parse(json).toString());
+			assertSame(JArray.EMPTY, parser.parse(" [ ] "));
+			assertEquals("{\"a\":[1,2]}", parser.parse("{\"a\":[1,2]}").toString());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testByteSerializer() throws Exception {
+		String json = new String(Files.readAllBytes(Paths.get(getClass().getResource("test.json").toURI())), StandardCharsets.UTF_8);
+		JObject root = parse(json).asObject();
+		root.set("texto", "a\u00e7\u00e3o \u20ac \ud83d\ude00 \"\\\n\u0001");
+		root.set("lazy", new JElementParser().parseLazy("{\"a\":[1,\"\u00e9\"]}"));
+		byte[] expected = root.toString().getBytes(StandardCharsets.UTF_8);
+
+		JElementByteSerializer serializer = new JElementByteSerializer(16);
+		assertArrayEquals(expected, serializer.toBytes(root));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize(root, out);
+		assertArrayEquals(expected, out.toByteArray());
+
+		ByteBuffer target = ByteBuffer.allocateDirect(expected.length);
+		assertEquals(expected.length, serializer.serialize(root, target));
+		target.flip();
+		byte[] written = new byte[target.remaining()];
+		target.get(written);
+		assertArrayEquals(expected, written);
+		assertEquals(root.toString(), new JElementParser().parse(expected).toString());
+	}
+
+	@Test
+	public void testStreamingWriter() throws IOException {
+		StringWriter out = new StringWriter();
+		JElementWriter writer = new JElementWriter(out);
+		writer.beginObject()
+				.name("id").value(42L)
+				.name("nome").value("Luciano \"Greiner")
+				.name("saldo").value(new BigDecimal("500.50"))
+				.name("taxa").value(0.25)
+				.name("data").value(LocalDate.of(2017, 5, 16))
+				.name("vazio").nullValue()
+				.name("cliente").writeElement(parse("{\"ativo\":true}"))
+				.name("itens").writeArray(Arrays.asList(1, "dois", 3L).stream())
+				.name("nada").beginArray().endArray()
+				.endObject();
+		writer.close();
+
+		assertEquals("{\"id\":42,\"nome\":\"Luciano \\\"Greiner\",\"saldo\":500.50,\"taxa\":0.25,\"data\":\"2017-05-16\",\"vazio\":null,\"cliente\":{\"ativo\":true},\"itens\":[1,\"dois\",3],\"nada\":[]}", out.toString());
+		assertEquals("Luciano \"Greiner", parse(out.toString()).asObject().str("nome"));
+
+		out = new StringWriter();
+		new JElementWriter(out).beginArray()
+				.value(Long.MIN_VALUE).value(1e21).value(-0.0)
+				.value(LocalDateTime.of(2017, 5, 16, 8, 30)).value(LocalDateTime.of(2017, 5, 16, 8, 30, 5, 120_000_000))
+				.endArray().close();
+		assertEquals("[" + Long.MIN_VALUE + "," + 1e21 + ",-0.0,\"2017-05-16T08:30\",\"2017-05-16T08:30:05.120\"]", out.toString());
+
+		try {
+			new JElementWriter(new StringWriter()).beginObject().value(1L);
+			throw new AssertionError("value without name accepted");
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	@Test
+	public void testSerializedFormCache() throws Exception {
+		JObject root = parse("{\"cliente\":{\"nome\":\"Luciano\",\"enderecos\":[{\"cidade\":\"Curitiba\"}]},\"itens\":[1,2]}").asObject();
+		String first = root.toString();
+		assertSame(first, root.toString());
+		JArray itens = root.array("itens");
+		assertNull(itens.cachedString());
+		assertSame(itens.toString(), itens.cachedString());
+
+		root.object("cliente").array("enderecos").object(0).set("cidade", "Londrina");
+		assertEquals(null, root.cachedString());
+		assertEquals(null, root.object("cliente").cachedString());
+		assertEquals("[1,2]", itens.cachedString());
+		assertEquals("{\"cliente\":{\"nome\":\"Luciano\",\"enderecos\":[{\"cidade\":\"Londrina\"}]},\"itens\":[1,2]}", root.toString());
+
+		itens.add(3);
+		StringWriter out = new StringWriter();
+		new JElementSerializer().serialize(root, out);
+		assertEquals("{\"cliente\":{\"nome\":\"Luciano\",\"enderecos\":[{\"cidade\":\"Londrina\"}]},\"itens\":[1,2,3]}", out.toString());
+		assertEquals(out.toString(), root.toString());
+
+		JArray pessoas = parse("[{\"nome\":\"Ana\"},{\"nome\":\"Bia\"}]").asArray();
+		assertTrue(pessoas.contains(new JObject().set("nome", "Bia")));
+		assertFalse(pessoas.contains(new JObject().set("nome", "Carla")));
+		assertNull(pessoas.object(0).cachedString());
+		assertNull(pessoas.object(1).cachedString());
+
+		JArray slice = itens.slice(0, 2);
+		JObject holder = new JObject().set("slice", slice);
+		assertEquals("{\"slice\":[1,2]}", holder.toString());
+		itens.set(0, 9);
+		assertEquals("{\"slice\":[9,2]}", holder.toString());
+		assertEquals("{\"cliente\":{\"nome\":\"Luciano\",\"enderecos\":[{\"cidade\":\"Londrina\"}]},\"itens\":[9,2,3]}", root.toString());
+
+		root.object("cliente").iterator().next().setValue(new JStr("Ana"));
+		assertEquals("{\"cliente\":{\"nome\":\"Ana\",\"enderecos\":[{\"cidade\":\"Londrina\"}]},\"itens\":[9,2,3]}", root.toString());
+		JObject lazy = new JElementParser().parseLazy("{\"a\":{\"b\":{\"c\":1}}}").asObject();
+		assertEquals("{\"a\":{\"b\":{\"c\":1}}}", lazy.toString());
+		lazy.object("a").object("b").set("c", 2);
+		assertNull(lazy.object("a").cachedString());
+		assertEquals("{\"a\":{\"b\":{\"c\":2}}}", lazy.toString());
+		JObject decoded = new JElementParser().parseLazy("{\"a\":[1],\"b\":2}").asObject();
+		String form = decoded.toString();
+		Entry<String, JElement> property = decoded.iterator().next();
+		assertTrue(property.getValue().isArray());
+		assertSame(form, decoded.cachedString());
+		property.getValue().asArray().add(2);
+		assertEquals("{\"a\":[1,2],\"b\":2}", decoded.toString());
+		property.setValue(new JStr("x"));
+		assertEquals("{\"a\":\"x\",\"b\":2}", decoded.toString());
+		JObject mapped = Json.synchronizedJObject().set("a", 1);
+		assertEquals("{\"a\":1}", mapped.toString());
+		mapped.iterator().next().setValue(new JStr("b"));
+		assertEquals("{\"a\":\"b\"}", mapped.toString());
+
+		JObject shared = Json.synchronizedJObject().set("n", 0);
+		JArray sharedItems = Json.synchronizedJArray().add(0);
+		shared.set("itens", sharedItems);
+		for (int i = 0; i < 2000; i++) {
+			sharedItems.add("padding");
+		}
+		String padding = sharedItems.toString().substring(2);
+		for (int round = 0; round < 20; round++) {
+			int last = (round + 1) * 100;
+			Thread writer = new Thread(() -> {
+				for (int i = last - 99; i <= last; i++) {
+					shared.set("n", i);
+					sharedItems.set(0, i);
+					Thread.yield();
+				}
+			});
+			writer.start();
+			while (writer.isAlive()) {
+				shared.toString();
+			}
+			writer.join();
+			assertEquals("{\"n\":" + last + ",\"itens\":[" + last + padding + "}", shared.toString());
+		}
+	}
+
+	@Test
+	public void testNumberAndDateFormatting() {
+		double[] samples = { 0.0, -0.0, 1.0, -1.5, 0.001, 1.0E-4, 9999999.0, 1.0E7, 123456.789, 1.0E23, 4.9E-324, Double.MIN_NORMAL, Double.MAX_VALUE, 0.1 + 0.2 };
+		String[] expected = { "0.0", "-0.0", "1.0", "-1.5", "0.001", "1.0E-4", "9999999.0", "1.0E7", "123456.789", "1.0E23", "4.9E-324", "2.2250738585072014E-308", "1.7976931348623157E308", "0.30000000000000004" };
+		for (int i = 0; i < samples.length; i++) {
+			assertEquals(expected[i], new JArray().add(samples[i]).toString().replaceAll("[\\[\\]]", ""));
+		}
+
+		Random random = new Random(16);
+		JElementByteSerializer bytes = new JElementByteSerializer(16);
+		for (int i = 0; i < 20000; i++) {
+			double value = i % 2 == 0 ? Double.longBitsToDouble(random.nextLong()) : random.nextInt() / Math.pow(10, random.nextInt(12));
+			if (Double.isNaN(value) || Double.isInfinite(value)) {
+				continue;
+			}
+			String text = new JArray().add(value).toString();
+			text = text.substring(1, text.length() - 1);
+			assertEquals(value, Double.parseDouble(text), 0.0);
+			assertTrue(text.length() <= Double.toString(value).length());
+			long integer = random.nextLong() >> random.nextInt(64);
+			JArray numbers = new JArray().add(integer).add((int) integer).add(value);
+			assertEquals("[" + integer + "," + (int) integer + "," + text + "]", numbers.toString());
+			assertEquals(numbers.toString(), new String(bytes.toBytes(numbers), StandardCharsets.UTF_8));
+		}
+		assertEquals("[-9223372036854775808,-2147483648]", new JArray().add(Long.MIN_VALUE).add(Integer.MIN_VALUE).toString());
+
+		JArray dates = new JArray()
+				.add(new JDate(LocalDate.of(2017, 5, 16)))
+				.add(new JDate(LocalDateTime.of(2017, 5, 16, 10, 15)))
+				.add(new JDate(LocalDateTime.of(2017, 5, 16, 10, 15, 0, 120000000)))
+				.add(new JDate(LocalDateTime.of(17, 1, 2, 3, 4, 5, 6)));
+		assertEquals("[\"2017-05-16\",\"2017-05-16T10:15\",\"2017-05-16T10:15:00.120\",\"0017-01-02T03:04:05.000000006\"]", dates.toString());
+		assertEquals(dates.toString(), new String(bytes.toBytes(dates), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testArrayExport() throws IOException {
+		StringBuilder json = new StringBuilder("[");
+		Random random = new Random(17);
+		for (int i = 0; i < 300; i++) {
+			if (i > 0) json.append(',');
+			randomValue(random, json, 0);
+		}
+		JArray array = JSharedParser.DEFAULT.parseLazy(json.append(']').toString()).asArray();
+		array.object(0);
+		array.get(1).toString();
+		byte[] expected = new JElementByteSerializer().toBytes(array);
+
+		Path file = Files.createTempFile("export", ".json");
+		try {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				JArrayExporter exporter = new JArrayExporter(channel, 16, 3, JArrayExporter.Sync.EVERY_WRITE);
+				assertEquals(expected.length, exporter.export(array));
+				assertEquals(2, exporter.export(new JArray()));
+			}
+			byte[] written = Files.readAllBytes(file);
+			assertArrayEquals(expected, Arrays.copyOf(written, expected.length));
+			assertEquals("[]", new String(written, expected.length, 2, StandardCharsets.UTF_8));
+
+			try (JArrayExporter exporter = new JArrayExporter(file)) {
+				exporter.export(array);
+			}
+			assertArrayEquals(expected, Files.readAllBytes(file));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testShapeCacheOutput() throws IOException {
+		JArray records = new JArray();
+		Random random = new Random(18);
+		for (int i = 0; i < 500; i++) {
+			JObject record = new JObject().set("id", i).set("nome \"q\"", "n" + i).set("a\u00e7\u00e3o", i % 3 == 0);
+			if (i % 7 == 0) {
+				record.set("extra", new JArray().add(i));
+			}
+			if (i % 11 == 0) {
+				record.delete("id").set("id", -i);
+			}
+			record.set("endereco", new JObject().set("cidade", "c" + random.nextInt(5)));
+			records.add(record);
+		}
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < 50; i++) {
+			if (i > 0) json.append(',');
+			randomValue(random, json, 0);
+		}
+		records.add(parse(json.append(']').toString()));
+
+		StringWriter plain = new StringWriter();
+		new JElementSerializer().serialize(records, plain);
+		StringWriter shaped = new StringWriter();
+		JElementSerializer serializer = new JElementSerializer().shapeCache(true);
+		serializer.serialize(records, shaped);
+		assertEquals(plain.toString(), shaped.toString());
+		shaped = new StringWriter();
+		serializer.serialize(records, shaped);
+		assertEquals(plain.toString(), shaped.toString());
+		assertArrayEquals(plain.toString().getBytes(StandardCharsets.UTF_8), new JElementByteSerializer(16).shapeCache(true).toBytes(records));
+	}
+
+	@Test
+	public void testChunkedSerializer() {
+		StringBuilder json = new StringBuilder("[");
+		Random random = new Random(19);
+		for (int i = 0; i < 40; i++) {
+			if (i > 0) json.append(',');
+			randomValue(random, json, 0);
+		}
+		JArray document = JSharedParser.DEFAULT.parseLazy(json.append(']').toString()).asArray();
+		document.get(0).toString();
+		document.add(new JObject().set("vazio", new JObject()).set("itens", new JArray().add(1).add("dois")));
+		byte[] expected = new JElementByteSerializer().toBytes(document);
+
+		for (int size : new int[] { 1, 7, 64, 4096 }) {
+			JChunkedSerializer serializer = new JChunkedSerializer(document);
+			ByteBuffer chunk = ByteBuffer.allocate(size);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			while (serializer.hasNext()) {
+				chunk.clear();
+				int length = serializer.next(chunk);
+				assertTrue(length <= size);
+				out.write(chunk.array(), 0, length);
+			}
+			assertArrayEquals(expected, out.toByteArray());
+			assertEquals(0, serializer.next(chunk));
+		}
+		JChunkedSerializer scalar = new JChunkedSerializer(new JStr("a\u00e7\u00e3o"));
+		ByteBuffer chunk = ByteBuffer.allocate(16);
+		assertEquals(8, scalar.next(chunk));
+		assertTrue(!scalar.hasNext());
+	}
+
+	@Test
+	public void testParallelSerializer() throws IOException {
+		StringBuilder json = new StringBuilder("[");
+		Random random = new Random(20);
+		for (int i = 0; i < 2000; i++) {
+			if (i > 0) json.append(',');
+			randomValue(random, json, 0);
+		}
+		JArray array = JSharedParser.DEFAULT.parseLazy(json.append(']').toString()).asArray();
+		byte[] expected = new JElementByteSerializer().toBytes(array);
+
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			JParallelSerializer serializer = new JParallelSerializer(pool, 10);
+			assertArrayEquals(expected, serializer.toBytes(array));
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			serializer.serialize(array, out);
+			assertArrayEquals(expected, out.toByteArray());
+
+			Path file = Files.createTempFile("parallel", ".json");
+			try {
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+					serializer.serialize(array, channel);
+				}
+				assertArrayEquals(expected, Files.readAllBytes(file));
+			} finally {
+				Files.delete(file);
+			}
+			assertEquals("[1,2]", new String(serializer.toBytes(new JArray().add(1).add(2)), StandardCharsets.UTF_8));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testArrayViews() {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < 100000; i++) {
+			json.append(i).append(',');
+		}
+		json.setCharAt(json.length() - 1, ']');
+		JArray array = parse(json.toString()).asArray();
+		long sum = 0;
+		for (int i = 0; i < array.size(); i++) {
+			sum += array.integer(i);
+		}
+		assertEquals(4999950000L, sum);
+
+		JArray slice = array.slice(50000, 50003);
+		assertEquals("[50000,50001,50002]", slice.toString());
+		slice.set(1, -1);
+		assertEquals(Integer.valueOf(-1), array.integer(50001));
+		assertEquals("[0,1]", array.limit(2).toString());
+		assertEquals(Integer.valueOf(3), array.limit(3).size());
+		assertEquals("[[1,2],[3,4,5]]", parse("[[1,2],[3,4,5]]").toString());
+	}
+
+	@Test
+	public void testPrimitiveArrays() {
+		JArray longs = parse("[1, -2, 3000000000, 4]").asArray();
+		assertEquals(JNumType.LONG, longs.primitiveType());
+		assertArrayEquals(new long[] { 1, -2, 3000000000L, 4 }, longs.toLongArray());
+		assertEquals(JNumType.INTEGER, ((JNumber) longs.get(0)).numberType());
+		assertEquals("[1,-2,3000000000,4]", longs.toString());
+
+		JArray doubles = JSharedParser.DEFAULT.withDecimalMode(JDecimalMode.DOUBLE).parse("[0.5, 1.25, -3.0]").asArray();
+		assertEquals(JNumType.DOUBLE, doubles.primitiveType());
+		assertEquals(-1.25, doubles.doubleStream().sum(), 0);
+		assertEquals("[0.5,1.25,-3.0]", doubles.toString());
+		assertEquals(1.25, doubles.doubleAt(1), 0);
+		assertEquals(3000000000L, longs.longAt(2));
+
+		longs.add("five");
+		assertNull(longs.primitiveType());
+		assertEquals("[1,-2,3000000000,4,\"five\"]", longs.toString());
+		assertEquals(10, parse("[1, 2, 3, 4]").asArray().longStream().sum());
+		assertNull(parse("[1, \"2\"]").asArray().primitiveType());
+	}
+
+	@Test
+	public void testNumberConversions() {
+		assertSame(JNumber.valueOf(42), parse("[42]").asArray().get(0));
+		assertSame(JNumber.valueOf(-1), JNumber.valueOf(-1));
+		assertEquals(new BigDecimal("0.1"), new JNumber(0.1).decimal());
+		assertEquals(new BigDecimal("12345.5"), new JNumber(12345.5).decimal());
+		assertEquals(new BigDecimal("0.3"), new JNumber(0.3f).decimal());
+		assertEquals(BigInteger.valueOf(3000000000L), new JNumber(3000000000L).bigInteger());
+		assertEquals(7, new JNumber(7.9).toInt());
+		assertEquals(2.5, new JNumber(new BigDecimal("2.5")).toDouble(), 0);
+		assertEquals(Long.valueOf(9), new JNumber(9).longint());
+		assertEquals("1.5E10", new JNumber(1.5e10).string());
+		assertEquals(new BigDecimal("2.0E23"), new JNumber(2e23).decimal());
+		assertEquals(new BigDecimal("0.1"), new JNumber(0.1).decimal());
+		assertEquals(JNumType.LONG, new JNumber(Long.valueOf(5)).numberType());
+	}
+
+	@Test
+	public void testShapedObjects() {
+		JArray records = parse("[{\"id\":1,\"name\":\"a\",\"tags\":[]},{\"id\":2,\"name\":\"b\",\"tags\":[1]}]").asArray();
+		JObject second = records.get(1).asObject();
+		second.set("extra", true).delete("name");
+		assertEquals("{\"id\":2,\"tags\":[1],\"extra\":true}", second.toString());
+		second.set("name", "c");
+		assertEquals("[{\"id\":1,\"name\":\"a\",\"tags\":[]},{\"id\":2,\"tags\":[1],\"extra\":true,\"name\":\"c\"}]", records.toString());
+
+		Iterator<Entry<String, JElement>> iterator = second.iterator();
+		iterator.next();
+		iterator.next();
+		iterator.remove();
+		assertEquals("extra", iterator.next().getKey());
+		assertEquals("{\"id\":2,\"extra\":true,\"name\":\"c\"}", second.toString());
+
+		JObject wide = new JObject();
+		for (int i = 0; i < 40; i++) {
+			wide.set("k" + i, i);
+		}
+		assertEquals(Integer.valueOf(40), wide.size());
+		assertEquals(Integer.valueOf(39), wide.integer("k39"));
+		assertEquals("k0", wide.iterator().next().getKey());
+
+		List<JObject> ids = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			ids.add(new JObject().set("id-" + i, i));
+		}
+		JObject crowded = new JObject().set("late", 1).set("later", 2).set("latest", 3);
+		assertEquals("{\"late\":1,\"later\":2,\"latest\":3}", crowded.toString());
+		crowded.set("later", 20).delete("late").set("late", 10);
+		assertEquals(Integer.valueOf(20), crowded.integer("later"));
+		assertEquals("{\"later\":20,\"latest\":3,\"late\":10}", crowded.toString());
+		crowded.iterator().next().setValue(new JStr("x"));
+		assertEquals("{\"later\":\"x\",\"latest\":3,\"late\":10}", crowded.toString());
+		for (int i = 0; i < ids.size(); i++) {
+			assertEquals("{\"id-" + i + "\":" + i + "}", ids.get(i).toString());
+		}
+	}
+
+	@Test
+	public void testPersistentVersions() {
+		JObject config = parse("{\"name\":\"app\",\"db\":{\"host\":\"a\",\"port\":5432},\"hosts\":[\"x\",\"y\"]}").asObject();
+		JObject v1 = config.persistent();
+		JObject v2 = v1.with("db.host", "b").with("cache.size", 64);
+		JObject v3 = v2.without("name").without("db.port");
+
+		assertEquals("{\"name\":\"app\",\"db\":{\"host\":\"a\",\"port\":5432},\"hosts\":[\"x\",\"y\"]}", v1.toString());
+		assertEquals("{\"name\":\"app\",\"db\":{\"host\":\"b\",\"port\":5432},\"hosts\":[\"x\",\"y\"],\"cache\":{\"size\":64}}", v2.toString());
+		assertEquals("{\"db\":{\"host\":\"b\"},\"hosts\":[\"x\",\"y\"],\"cache\":{\"size\":64}}", v3.toString());
+		assertSame(v1.get("hosts"), v3.get("hosts"));
+		assertEquals("b", v2.str("db.host"));
+		assertEquals(Integer.valueOf(64), v3.integer("cache.size"));
+		assertSame(v1, v1.without("missing"));
+
+		try {
+			v1.set("name", "other");
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		JArray hosts = v1.array("hosts");
+		JArray more = hosts;
+		for (int i = 0; i < 1100; i++) {
+			more = more.plus(i);
+		}
+		assertEquals(Integer.valueOf(1102), more.size());
+		assertEquals(Integer.valueOf(1099), more.integer(1101));
+		assertEquals("[\"x\",\"z\"]", hosts.with(1, "z").toString());
+		assertEquals("[\"x\",\"y\"]", hosts.toString());
+
+		JObject wide = new JObject().persistent();
+		for (int i = 0; i < 2000; i++) {
+			wide = wide.with("k" + i, i);
+		}
+		for (int i = 0; i < 2000; i += 2) {
+			wide = wide.without("k" + i);
+		}
+		assertEquals(Integer.valueOf(1000), wide.size());
+		assertEquals(Integer.valueOf(1501), wide.integer("k1501"));
+		assertEquals("k1", wide.iterator().next().getKey());
+	}
+
+	private void randomValue(Random random, StringBuilder json, int depth) {
+		String[] spaces = { "", " ", "\n\t", "\r\n  " };
+		json.append(spaces[random.nextInt(spaces.length)]);
+		int kind = depth > 4 ? 2 + random.nextInt(4) : random.nextInt(6);
+		switch (kind) {
+		case 0:
+			json.append('{');
+			for (int i = random.nextInt(6); i >= 0; i--) {
+				json.append("\"k").append(random.nextInt(1000)).append("\"").append(spaces[random.nextInt(spaces.length)]).append(':');
+				randomValue(random, json, depth + 1);
+				json.append(i > 0 ? "," : "");
+			}
+			json.append('}');
+			break;
+		case 1:
+			json.append('[');
+			for (int i = random.nextInt(6); i >= 0; i--) {
+				randomValue(random, json, depth + 1);
+				json.append(i > 0 ? "," : "");
+			}
+			json.append(']');
+			break;
+		case 2:
+			String chars = "ab {}[]:,\u00e7\u207b\u805d\uff22";
+			json.append('"');
+			for (int i = random.nextInt(90); i >= 0; i--) {
+				if (random.nextInt(20) == 0) {
+					json.append("\\\"q");
+				} else {
+					json.append(chars.charAt(random.nextInt(chars.length())));
+				}
+			}
+			json.append('"');
+			break;
+		case 3:
+			json.append(random.nextInt() / (random.nextInt(3) + 1));
+			break;
+		case 4:
+			json.append(new BigDecimal(random.nextInt()).movePointLeft(random.nextInt(5) + 1));
+			break;
+		default:
+			json.append(random.nextBoolean() ? "true" : random.nextBoolean() ? "false" : "null");
+		}
+		json.append(spaces[random.nextInt(spaces.length)]);
+	}
+
 	private JElement parse(String json) {
 		JElementParser parser = new JElementParser();
 		char[] jsonData = json.toCharArray();